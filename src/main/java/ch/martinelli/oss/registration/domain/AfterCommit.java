@@ -0,0 +1,45 @@
+package ch.martinelli.oss.registration.domain;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Runs actions that must see the committed state, e.g. cache evictions and waking up
+ * workers for queued rows.
+ */
+final class AfterCommit {
+
+    private AfterCommit() {
+    }
+
+    /**
+     * Runs the action after the commit of the current transaction, or now if there is no
+     * transaction.
+     */
+    static void run(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        }
+        else {
+            action.run();
+        }
+    }
+
+    /**
+     * Runs the action now and, within a transaction, again after the commit. Used for
+     * evictions, so an entry loaded by a concurrent read before the commit is evicted as
+     * well.
+     */
+    static void runNowAndAfterCommit(Runnable action) {
+        action.run();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            run(action);
+        }
+    }
+
+}
@@ -0,0 +1,68 @@
+package ch.martinelli.oss.registration.domain;
+
+import org.apache.commons.codec.digest.MurmurHash3;
+
+import java.nio.charset.StandardCharsets;
+import java.util.BitSet;
+
+/**
+ * Bloom filter for strings. {@link #mightContain(String)} is {@code false} for every
+ * string that was not put, except for about the false positive probability the filter was
+ * created with. The bit positions are derived from the two halves of a 128-bit
+ * MurmurHash3 by double hashing.
+ * <p>
+ * The filter is not thread safe while strings are put. It may be shared once it is
+ * filled.
+ */
+final class BloomFilter {
+
+    private final BitSet bits;
+
+    private final int size;
+
+    private final int hashFunctions;
+
+    private BloomFilter(int size, int hashFunctions) {
+        this.bits = new BitSet(size);
+        this.size = size;
+        this.hashFunctions = hashFunctions;
+    }
+
+    /**
+     * @param expectedInsertions the number of strings that will be put
+     * @param falsePositiveProbability the probability that a string that was not put is
+     * reported as contained
+     */
+    static BloomFilter create(int expectedInsertions, double falsePositiveProbability) {
+        var insertions = Math.max(1, expectedInsertions);
+        var size = (int) Math.ceil(-insertions * Math.log(falsePositiveProbability) / (Math.log(2) * Math.log(2)));
+        var hashFunctions = Math.max(1, (int) Math.round((double) size / insertions * Math.log(2)));
+        return new BloomFilter(size, hashFunctions);
+    }
+
+    void put(String value) {
+        var hash = hash(value);
+        for (var i = 0; i < hashFunctions; i++) {
+            bits.set(index(hash, i));
+        }
+    }
+
+    boolean mightContain(String value) {
+        var hash = hash(value);
+        for (var i = 0; i < hashFunctions; i++) {
+            if (!bits.get(index(hash, i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long[] hash(String value) {
+        return MurmurHash3.hash128x64(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private int index(long[] hash, int i) {
+        return (int) Long.remainderUnsigned(hash[0] + i * hash[1], size);
+    }
+
+}
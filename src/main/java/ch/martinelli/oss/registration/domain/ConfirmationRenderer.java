@@ -0,0 +1,134 @@
+package ch.martinelli.oss.registration.domain;
+
+import ch.martinelli.oss.registration.domain.ConfirmationTemplate.Placeholder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.stereotype.Component;
+
+import java.time.format.DateTimeFormatter;
+import java.util.EnumMap;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import static ch.martinelli.oss.registration.domain.ConfirmationTemplate.Placeholder.EVENTS;
+import static ch.martinelli.oss.registration.domain.ConfirmationTemplate.Placeholder.LINK;
+import static ch.martinelli.oss.registration.domain.ConfirmationTemplate.Placeholder.OPEN_FROM;
+import static ch.martinelli.oss.registration.domain.ConfirmationTemplate.Placeholder.OPEN_UNTIL;
+import static ch.martinelli.oss.registration.domain.ConfirmationTemplate.Placeholder.PERSON_NAMES;
+import static ch.martinelli.oss.registration.domain.ConfirmationTemplate.Placeholder.REMARKS;
+
+/**
+ * Renders the confirmation email of a registration.
+ * <p>
+ * {@link RegistrationService#register} only queues the confirmation in the mail outbox
+ * within the registration transaction, so it survives a crash and the public registration
+ * request does not wait for the rendering. The {@link MailOutboxWorker} renders it when
+ * it is sent, so it reflects the registrations at that time.
+ */
+@Component
+public class ConfirmationRenderer {
+
+    private static final Logger log = LoggerFactory.getLogger(ConfirmationRenderer.class);
+
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("dd.MM.yyyy");
+
+    private final RegistrationCache registrationCache;
+
+    private final RegistrationEmailRepository registrationEmailRepository;
+
+    private final EventRegistrationRepository eventRegistrationRepository;
+
+    private final EmailSender emailSender;
+
+    private final ConfirmationTemplateCache confirmationTemplateCache;
+
+    private final String publicAddress;
+
+    public ConfirmationRenderer(RegistrationCache registrationCache,
+            RegistrationEmailRepository registrationEmailRepository,
+            EventRegistrationRepository eventRegistrationRepository, EmailSender emailSender,
+            ConfirmationTemplateCache confirmationTemplateCache,
+            @Value("${registration.public.address}") String publicAddress) {
+        this.registrationCache = registrationCache;
+        this.registrationEmailRepository = registrationEmailRepository;
+        this.eventRegistrationRepository = eventRegistrationRepository;
+        this.emailSender = emailSender;
+        this.confirmationTemplateCache = confirmationTemplateCache;
+        this.publicAddress = publicAddress;
+    }
+
+    /**
+     * @param firstRegistration true for the confirmation of the first registration, false
+     * for an update
+     * @return the confirmation or empty if no template is configured or the registration
+     * email no longer exists
+     */
+    public Optional<SimpleMailMessage> render(Long registrationEmailId, boolean firstRegistration) {
+        var registrationEmailViewOpt = registrationEmailRepository.findByIdFromView(registrationEmailId);
+        if (registrationEmailViewOpt.isEmpty()) {
+            log.warn("Could not find registration email with id {}", registrationEmailId);
+            return Optional.empty();
+        }
+
+        var registrationEmailView = registrationEmailViewOpt.get();
+        var registrationOpt = registrationCache.findRegistration(registrationEmailView.getRegistrationId());
+        if (registrationOpt.isEmpty()) {
+            log.warn("Could not find registration with id {}", registrationEmailView.getRegistrationId());
+            return Optional.empty();
+        }
+
+        var registration = registrationOpt.get();
+
+        // Choose template based on whether it's first registration or update
+        String subject;
+        String text;
+        if (firstRegistration) {
+            subject = registration.getConfirmationEmailSubjectNew();
+            text = registration.getConfirmationEmailTextNew();
+        }
+        else {
+            subject = registration.getConfirmationEmailSubjectUpdate();
+            text = registration.getConfirmationEmailTextUpdate();
+        }
+
+        // If no template is configured, skip sending
+        if (text == null || text.isBlank()) {
+            log.info("No confirmation email template configured for registration {}", registration.getId());
+            return Optional.empty();
+        }
+
+        // Load the registrations of all persons for all events with one query
+        var state = eventRegistrationRepository.findRegistrationEmailState(registrationEmailId);
+        var personNames = state.persons().stream().collect(Collectors.joining("\n- ", "- ", ""));
+
+        // Build events list with registration status
+        var eventsText = new StringBuilder();
+        for (var event = 0; event < state.events().size(); event++) {
+            eventsText.append("- ").append(state.events().get(event)).append(":\n");
+            for (var person = 0; person < state.persons().size(); person++) {
+                eventsText.append("  ")
+                    .append(state.persons().get(person))
+                    .append(": ")
+                    .append(state.isRegistered(event, person) ? "Ja" : "Nein")
+                    .append("\n");
+            }
+        }
+
+        // Replace placeholders
+        var values = new EnumMap<Placeholder, String>(Placeholder.class);
+        values.put(PERSON_NAMES, personNames);
+        values.put(EVENTS, eventsText.toString().trim());
+        values.put(LINK, "%s/public/%s".formatted(publicAddress, registrationEmailView.getLink()));
+        values.put(OPEN_FROM, registration.getOpenFrom().format(DATE_FORMATTER));
+        values.put(OPEN_UNTIL, registration.getOpenUntil().format(DATE_FORMATTER));
+        values.put(REMARKS, registration.getRemarks() != null ? registration.getRemarks() : "");
+        var body = confirmationTemplateCache.get(text).render(values);
+
+        // replyTo is the same as the recipient
+        return Optional.of(emailSender.createConfirmation(registrationEmailView.getEmail(),
+                subject != null ? subject : "Anmeldebestätigung", body, registrationEmailView.getEmail()));
+    }
+
+}
@@ -0,0 +1,99 @@
+package ch.martinelli.oss.registration.domain;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * A confirmation email text parsed into literal text and placeholders like
+ * {@code %PERSON_NAMES%}. The text is parsed once and can be rendered any number of times
+ * in a single pass. Unknown placeholders are kept as literal text.
+ */
+public final class ConfirmationTemplate {
+
+    public enum Placeholder {
+
+        PERSON_NAMES, EVENTS, LINK, OPEN_FROM, OPEN_UNTIL, REMARKS
+
+    }
+
+    private static final Pattern PLACEHOLDER_PATTERN = Pattern.compile("%([A-Z_]+)%");
+
+    // literals has one element more than placeholders: literal, placeholder, literal, ...
+    private final String[] literals;
+
+    private final Placeholder[] placeholders;
+
+    private final int literalsLength;
+
+    private ConfirmationTemplate(String[] literals, Placeholder[] placeholders) {
+        this.literals = literals;
+        this.placeholders = placeholders;
+        var length = 0;
+        for (var literal : literals) {
+            length += literal.length();
+        }
+        this.literalsLength = length;
+    }
+
+    public static ConfirmationTemplate parse(String template) {
+        var literals = new ArrayList<String>();
+        var placeholders = new ArrayList<Placeholder>();
+        var matcher = PLACEHOLDER_PATTERN.matcher(template);
+        var literalStart = 0;
+        while (matcher.find()) {
+            var placeholder = toPlaceholder(matcher.group(1));
+            if (placeholder != null) {
+                literals.add(template.substring(literalStart, matcher.start()));
+                placeholders.add(placeholder);
+                literalStart = matcher.end();
+            }
+        }
+        literals.add(template.substring(literalStart));
+        return new ConfirmationTemplate(literals.toArray(String[]::new), placeholders.toArray(Placeholder[]::new));
+    }
+
+    /**
+     * @return the placeholders in the text that are not known, in order of appearance
+     */
+    public static Set<String> findUnknownPlaceholders(String template) {
+        var unknown = new LinkedHashSet<String>();
+        if (template != null) {
+            var matcher = PLACEHOLDER_PATTERN.matcher(template);
+            while (matcher.find()) {
+                if (toPlaceholder(matcher.group(1)) == null) {
+                    unknown.add(matcher.group());
+                }
+            }
+        }
+        return unknown;
+    }
+
+    /**
+     * Renders the text. Placeholders without a value are replaced by an empty string,
+     * placeholders contained in the values are not replaced.
+     */
+    public String render(Map<Placeholder, String> values) {
+        var length = literalsLength;
+        for (var placeholder : placeholders) {
+            length += values.getOrDefault(placeholder, "").length();
+        }
+        var text = new StringBuilder(length);
+        for (var i = 0; i < placeholders.length; i++) {
+            text.append(literals[i]).append(values.getOrDefault(placeholders[i], ""));
+        }
+        return text.append(literals[placeholders.length]).toString();
+    }
+
+    private static Placeholder toPlaceholder(String name) {
+        for (var placeholder : Placeholder.values()) {
+            if (placeholder.name().equals(name)) {
+                return placeholder;
+            }
+        }
+        return null;
+    }
+
+}
@@ -0,0 +1,29 @@
+package ch.martinelli.oss.registration.domain;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps the parsed confirmation templates by their text. A changed template has a new
+ * text, so it is parsed again and an outdated template is never returned. Templates that
+ * are no longer used are evicted when the cache is full.
+ */
+@Component
+public class ConfirmationTemplateCache {
+
+    // Every registration has two templates
+    private static final int MAXIMUM_SIZE = 200;
+
+    private final LoadingCache<String, ConfirmationTemplate> templates = Caffeine.newBuilder()
+        .maximumSize(MAXIMUM_SIZE)
+        .build(ConfirmationTemplate::parse);
+
+    /**
+     * @return the parsed template of the text
+     */
+    public ConfirmationTemplate get(String text) {
+        return templates.get(text);
+    }
+
+}
@@ -2,6 +2,9 @@ package ch.martinelli.oss.registration.domain;
 
 import ch.martinelli.oss.registration.db.tables.records.RegistrationEmailViewRecord;
 import ch.martinelli.oss.registration.db.tables.records.RegistrationRecord;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.jooq.DSLContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -10,9 +13,13 @@ import org.springframework.mail.MailSendException;
 import org.springframework.mail.SimpleMailMessage;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 
 import static ch.martinelli.oss.registration.db.tables.RegistrationEmail.REGISTRATION_EMAIL;
 
@@ -29,55 +36,96 @@ public class EmailSender {
 
     private final String sender;
 
-    public EmailSender(JavaMailSender javaMailSender, DSLContext dslContext,
+    private final MeterRegistry meterRegistry;
+
+    private final Timer batchTimer;
+
+    private final Counter sentCounter;
+
+    private final Counter failedCounter;
+
+    public EmailSender(JavaMailSender javaMailSender, DSLContext dslContext, MeterRegistry meterRegistry,
             @Value("${registration.public.address}") String publicAddress,
             @Value("${spring.mail.username}") String sender) {
         this.javaMailSender = javaMailSender;
         this.dslContext = dslContext;
+        this.meterRegistry = meterRegistry;
         this.publicAddress = publicAddress;
         this.sender = sender;
+        this.batchTimer = Timer.builder("registration.mail.batch")
+            .description("Time to send a batch of invitations over one SMTP connection")
+            .register(meterRegistry);
+        this.sentCounter = Counter.builder("registration.mail.messages").tag("outcome", "sent").register(meterRegistry);
+        this.failedCounter = Counter.builder("registration.mail.messages")
+            .tag("outcome", "failed")
+            .register(meterRegistry);
     }
 
-    @Transactional
     public void sendEmail(RegistrationRecord registration, RegistrationEmailViewRecord registrationEmail,
             String replyTo) {
-        try {
-            var mailMessage = createMailMessage(registration, registrationEmail, replyTo);
-            javaMailSender.send(mailMessage);
-
-            log.info("Email sent to {} with RegistrationEmailId {}", registrationEmail.getEmail(),
-                    registrationEmail.getRegistrationEmailId());
-        }
-        catch (Exception e) {
+        var failures = send(Map.of(registrationEmail.getRegistrationEmailId(),
+                createInvitation(registration, registrationEmail, replyTo)));
+        if (!failures.isEmpty()) {
             throw new MailSendException("Failed to send email with RegistrationEmailId %d"
-                .formatted(registrationEmail.getRegistrationEmailId()), e);
+                .formatted(registrationEmail.getRegistrationEmailId()), failures.values().iterator().next());
         }
-
-        dslContext.update(REGISTRATION_EMAIL)
-            .set(REGISTRATION_EMAIL.SENT_AT, LocalDateTime.now())
-            .where(REGISTRATION_EMAIL.ID.eq(registrationEmail.getRegistrationEmailId()))
-            .execute();
+        markSent(List.of(registrationEmail.getRegistrationEmailId()));
     }
 
     public void sendConfirmationEmail(String to, String subject, String body, String replyTo) {
+        var failures = send(Map.of(to, createConfirmation(to, subject, body, replyTo)));
+        if (!failures.isEmpty()) {
+            throw new MailSendException("Failed to send confirmation email to %s".formatted(to),
+                    failures.values().iterator().next());
+        }
+    }
+
+    /**
+     * Sends the messages as one batch over a single SMTP connection.
+     * @param mailMessages the messages keyed by an id chosen by the caller
+     * @return the failures keyed by the id of the message
+     */
+    public <K> Map<K, Exception> send(Map<K, SimpleMailMessage> mailMessages) {
+        var failures = new HashMap<K, Exception>();
+        if (mailMessages.isEmpty()) {
+            return failures;
+        }
+
+        var ids = new IdentityHashMap<SimpleMailMessage, K>();
+        mailMessages.forEach((id, mailMessage) -> ids.put(mailMessage, id));
+        var sample = Timer.start(meterRegistry);
         try {
-            var message = new SimpleMailMessage();
-            message.setFrom(sender);
-            message.setTo(to);
-            message.setReplyTo(replyTo);
-            message.setSubject(subject);
-            message.setText(body);
-            javaMailSender.send(message);
-
-            log.info("Confirmation email sent to {}", to);
+            javaMailSender.send(mailMessages.values().toArray(SimpleMailMessage[]::new));
+        }
+        catch (MailSendException e) {
+            e.getFailedMessages().forEach((mailMessage, exception) -> failures.put(ids.get(mailMessage), exception));
         }
         catch (Exception e) {
-            log.error("Failed to send confirmation email to {}", to, e);
-            // Don't throw exception - we don't want to block registration if email fails
+            mailMessages.keySet().forEach(id -> failures.put(id, e));
         }
+        sample.stop(batchTimer);
+
+        sentCounter.increment((double) mailMessages.size() - failures.size());
+        failedCounter.increment(failures.size());
+        mailMessages.forEach((id, mailMessage) -> {
+            if (failures.containsKey(id)) {
+                log.warn("Failed to send email to {}", mailMessage.getTo(), failures.get(id));
+            }
+            else {
+                log.info("Email sent to {}", (Object) mailMessage.getTo());
+            }
+        });
+        return failures;
+    }
+
+    public void markSent(Collection<Long> registrationEmailIds) {
+        dslContext.update(REGISTRATION_EMAIL)
+            .set(REGISTRATION_EMAIL.SENT_AT, LocalDateTime.now())
+            .where(REGISTRATION_EMAIL.ID.in(registrationEmailIds))
+            .execute();
     }
 
-    private SimpleMailMessage createMailMessage(RegistrationRecord registration,
+    public SimpleMailMessage createInvitation(RegistrationRecord registration,
             RegistrationEmailViewRecord registrationEmail, String replyTo) {
         if (registration.getEmailText() == null) {
             throw new IllegalArgumentException(
@@ -93,4 +141,14 @@ public class EmailSender {
         return message;
     }
 
+    public SimpleMailMessage createConfirmation(String to, String subject, String body, String replyTo) {
+        var message = new SimpleMailMessage();
+        message.setFrom(sender);
+        message.setTo(to);
+        message.setReplyTo(replyTo);
+        message.setSubject(subject);
+        message.setText(body);
+        return message;
+    }
+
 }
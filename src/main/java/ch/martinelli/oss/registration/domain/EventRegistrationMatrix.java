@@ -0,0 +1,26 @@
+package ch.martinelli.oss.registration.domain;
+
+import ch.martinelli.oss.registration.db.tables.records.EventRecord;
+
+import java.util.List;
+
+/**
+ * The registrations of all persons of a registration for all its events. The columns are
+ * the events ordered by date and title, the rows are the persons ordered by last and
+ * first name.
+ *
+ * @param events the columns
+ * @param rows the persons with their registrations
+ * @param totals the number of registered persons per column
+ */
+public record EventRegistrationMatrix(List<EventRecord> events, List<EventRegistrationRow> rows, int[] totals) {
+
+    public int total(int eventIndex) {
+        return totals[eventIndex];
+    }
+
+    public boolean isEmpty() {
+        return rows.isEmpty();
+    }
+
+}
@@ -4,22 +4,28 @@ import ch.martinelli.oss.jooqspring.JooqDAO;
 import ch.martinelli.oss.registration.db.tables.EventRegistration;
 import ch.martinelli.oss.registration.db.tables.records.EventRecord;
 import ch.martinelli.oss.registration.db.tables.records.EventRegistrationRecord;
+import ch.martinelli.oss.registration.db.tables.records.PersonRecord;
 import org.jooq.DSLContext;
-import org.jooq.Field;
-import org.jooq.SelectField;
-import org.jooq.impl.DSL;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 import static ch.martinelli.oss.registration.db.tables.Event.EVENT;
 import static ch.martinelli.oss.registration.db.tables.EventRegistration.EVENT_REGISTRATION;
 import static ch.martinelli.oss.registration.db.tables.Person.PERSON;
+import static ch.martinelli.oss.registration.db.tables.RegistrationEmail.REGISTRATION_EMAIL;
+import static ch.martinelli.oss.registration.db.tables.RegistrationEmailPerson.REGISTRATION_EMAIL_PERSON;
 import static ch.martinelli.oss.registration.db.tables.RegistrationEvent.REGISTRATION_EVENT;
-import static org.jooq.impl.DSL.boolOr;
-import static org.jooq.impl.DSL.when;
+import static org.jooq.impl.DSL.excluded;
 
 // @formatter:off
 @Repository
@@ -29,57 +35,176 @@ public class EventRegistrationRepository extends JooqDAO<EventRegistration, Even
         super(dslContext, EVENT_REGISTRATION);
     }
 
-    public Optional<EventRegistrationRecord> findByEventIdAndPersonId(Long eventId, Long personId) {
+    /**
+     * Finds the event registrations of all persons of the registration email.
+     */
+    public List<EventRegistrationRecord> findByRegistrationEmailId(Long registrationEmailId) {
         return dslContext
-                .selectFrom(EVENT_REGISTRATION)
-                .where(EVENT_REGISTRATION.EVENT_ID.eq(eventId))
-                .and(EVENT_REGISTRATION.PERSON_ID.eq(personId))
-                .fetchOptional();
+                .select(EVENT_REGISTRATION.fields())
+                .from(EVENT_REGISTRATION)
+                .join(REGISTRATION_EMAIL_PERSON).on(REGISTRATION_EMAIL_PERSON.PERSON_ID.eq(EVENT_REGISTRATION.PERSON_ID))
+                .join(REGISTRATION_EMAIL).on(REGISTRATION_EMAIL.ID.eq(REGISTRATION_EMAIL_PERSON.REGISTRATION_EMAIL_ID))
+                    .and(REGISTRATION_EMAIL.REGISTRATION_ID.eq(EVENT_REGISTRATION.REGISTRATION_ID))
+                .where(REGISTRATION_EMAIL_PERSON.REGISTRATION_EMAIL_ID.eq(registrationEmailId))
+                .fetchInto(EVENT_REGISTRATION);
+    }
+
+    /**
+     * Finds the registration state of all persons of the registration email for all events
+     * of the registration with a single query. Missing event registrations are not
+     * registered.
+     */
+    public RegistrationEmailState findRegistrationEmailState(Long registrationEmailId) {
+        var records = dslContext
+                .select(EVENT.ID, EVENT.TITLE, PERSON.ID, PERSON.FIRST_NAME, PERSON.LAST_NAME, EVENT_REGISTRATION.REGISTERED)
+                .from(REGISTRATION_EMAIL)
+                .join(REGISTRATION_EMAIL_PERSON).on(REGISTRATION_EMAIL_PERSON.REGISTRATION_EMAIL_ID.eq(REGISTRATION_EMAIL.ID))
+                .join(PERSON).on(PERSON.ID.eq(REGISTRATION_EMAIL_PERSON.PERSON_ID))
+                .leftJoin(REGISTRATION_EVENT).on(REGISTRATION_EVENT.REGISTRATION_ID.eq(REGISTRATION_EMAIL.REGISTRATION_ID))
+                .leftJoin(EVENT).on(EVENT.ID.eq(REGISTRATION_EVENT.EVENT_ID))
+                .leftJoin(EVENT_REGISTRATION).on(EVENT_REGISTRATION.REGISTRATION_ID.eq(REGISTRATION_EMAIL.REGISTRATION_ID))
+                    .and(EVENT_REGISTRATION.EVENT_ID.eq(EVENT.ID))
+                    .and(EVENT_REGISTRATION.PERSON_ID.eq(PERSON.ID))
+                .where(REGISTRATION_EMAIL.ID.eq(registrationEmailId))
+                .orderBy(EVENT.FROM_DATE, EVENT.TITLE, EVENT.ID, PERSON.LAST_NAME, PERSON.FIRST_NAME, PERSON.ID)
+                .fetch();
+
+        var events = new LinkedHashMap<Long, Integer>();
+        var persons = new LinkedHashMap<Long, Integer>();
+        var eventTitles = new ArrayList<String>();
+        var personNames = new ArrayList<String>();
+        for (var r : records) {
+            if (r.value1() != null && events.putIfAbsent(r.value1(), events.size()) == null) {
+                eventTitles.add(r.value2());
+            }
+            if (persons.putIfAbsent(r.value3(), persons.size()) == null) {
+                personNames.add(r.value4() + " " + r.value5());
+            }
+        }
+
+        var registered = new BitSet(events.size() * persons.size());
+        for (var r : records) {
+            if (Boolean.TRUE.equals(r.value6())) {
+                registered.set(events.get(r.value1()) * persons.size() + persons.get(r.value3()));
+            }
+        }
+        return new RegistrationEmailState(eventTitles, personNames, registered);
     }
 
-    public List<EventRegistrationRow> getEventRegistrationMatrix(Long registrationId) {
-        // First get all events ordered by date and title
-        var events = dslContext
+    /**
+     * Finds the persons of the registration email ordered by last and first name with the
+     * ids of the events of the registration they are registered for. A person without
+     * registrations has a single {@code null} event id.
+     */
+    public Map<PersonRecord, List<Long>> findRegisteredEventIdsByPerson(Long registrationEmailId, Long registrationId) {
+        return dslContext
+                .select(PERSON.fields())
+                .select(EVENT_REGISTRATION.EVENT_ID)
+                .from(REGISTRATION_EMAIL_PERSON)
+                .join(PERSON).on(PERSON.ID.eq(REGISTRATION_EMAIL_PERSON.PERSON_ID))
+                .leftJoin(EVENT_REGISTRATION).on(EVENT_REGISTRATION.PERSON_ID.eq(PERSON.ID))
+                    .and(EVENT_REGISTRATION.REGISTRATION_ID.eq(registrationId))
+                    .and(EVENT_REGISTRATION.REGISTERED.isTrue())
+                .where(REGISTRATION_EMAIL_PERSON.REGISTRATION_EMAIL_ID.eq(registrationEmailId))
+                .orderBy(PERSON.LAST_NAME, PERSON.FIRST_NAME, PERSON.ID)
+                .fetchGroups(r -> r.into(PERSON), r -> r.get(EVENT_REGISTRATION.EVENT_ID));
+    }
+
+    /**
+     * Inserts or updates the event registrations in a single statement.
+     * @return the number of inserted or updated rows
+     */
+    @Transactional
+    public int upsert(Collection<EventRegistrationRecord> eventRegistrations) {
+        if (eventRegistrations.isEmpty()) {
+            return 0;
+        }
+        var insert = dslContext
+                .insertInto(EVENT_REGISTRATION, EVENT_REGISTRATION.REGISTRATION_ID, EVENT_REGISTRATION.EVENT_ID,
+                        EVENT_REGISTRATION.PERSON_ID, EVENT_REGISTRATION.REGISTERED);
+        for (var eventRegistration : eventRegistrations) {
+            insert = insert.values(eventRegistration.getRegistrationId(), eventRegistration.getEventId(),
+                    eventRegistration.getPersonId(), eventRegistration.getRegistered());
+        }
+        return insert
+                .onConflict(EVENT_REGISTRATION.REGISTRATION_ID, EVENT_REGISTRATION.EVENT_ID, EVENT_REGISTRATION.PERSON_ID)
+                .doUpdate()
+                .set(EVENT_REGISTRATION.REGISTERED, excluded(EVENT_REGISTRATION.REGISTERED))
+                .execute();
+    }
+
+    /**
+     * Builds the matrix and the totals of the columns in a single pass over the rows.
+     */
+    public EventRegistrationMatrix getEventRegistrationMatrix(Long registrationId) {
+        var events = findMatrixEvents(registrationId);
+        var rows = new ArrayList<EventRegistrationRow>();
+        var totals = new int[events.size()];
+        forEachEventRegistrationRow(registrationId, events, row -> {
+            rows.add(row);
+            row.registrations().stream().forEach(eventIndex -> totals[eventIndex]++);
+        });
+        return new EventRegistrationMatrix(events, rows, totals);
+    }
+
+    /**
+     * @return the columns of the matrix, the events of the registration ordered by date
+     * and title
+     */
+    public List<EventRecord> findMatrixEvents(Long registrationId) {
+        return dslContext
                 .select(REGISTRATION_EVENT.event().fields())
                 .from(REGISTRATION_EVENT)
                 .where(REGISTRATION_EVENT.REGISTRATION_ID.eq(registrationId))
-                .orderBy(REGISTRATION_EVENT.event().FROM_DATE, REGISTRATION_EVENT.event().TITLE)
+                .orderBy(REGISTRATION_EVENT.event().FROM_DATE, REGISTRATION_EVENT.event().TITLE, REGISTRATION_EVENT.EVENT_ID)
                 .fetchInto(EventRecord.class);
+    }
 
-        // Create select fields starting with person info
-        var fields = new ArrayList<SelectField<?>>();
-        fields.add(PERSON.LAST_NAME);
-        fields.add(PERSON.FIRST_NAME);
-
-        // Add a field for each event
+    /**
+     * Streams the registrations as (person, event, registered) triples sorted by person
+     * from a cursor and passes each completed row to the consumer, so only one row is kept
+     * in memory. Columns are identified by the id of the event, so events with the same
+     * title stay separate columns.
+     * @param events the columns as returned by {@link #findMatrixEvents(Long)}
+     */
+    public void forEachEventRegistrationRow(Long registrationId, List<EventRecord> events,
+            Consumer<EventRegistrationRow> consumer) {
+        var eventIndexes = new HashMap<Long, Integer>();
         for (var event : events) {
-            Field<Boolean> registrationField = boolOr(
-                    when(EVENT.TITLE.eq(event.getTitle()), EVENT_REGISTRATION.REGISTERED).otherwise(false)
-            ).as(DSL.name(event.getTitle()));
-
-            fields.add(registrationField);
+            eventIndexes.put(event.getId(), eventIndexes.size());
         }
 
-        return dslContext
-                .select(fields)
-                .from(PERSON)
-                .join(EVENT_REGISTRATION).on(EVENT_REGISTRATION.PERSON_ID.eq(PERSON.ID))
-                .join(EVENT).on(EVENT.ID.eq(EVENT_REGISTRATION.EVENT_ID))
+        try (var cursor = dslContext
+                .select(PERSON.ID, PERSON.LAST_NAME, PERSON.FIRST_NAME, EVENT_REGISTRATION.EVENT_ID, EVENT_REGISTRATION.REGISTERED)
+                .from(EVENT_REGISTRATION)
+                .join(PERSON).on(PERSON.ID.eq(EVENT_REGISTRATION.PERSON_ID))
                 .where(EVENT_REGISTRATION.REGISTRATION_ID.eq(registrationId))
-                .groupBy(PERSON.ID, PERSON.LAST_NAME, PERSON.FIRST_NAME)
-                .orderBy(PERSON.LAST_NAME, PERSON.FIRST_NAME)
-                .fetch()
-                .map(EventRegistrationRow::fromRecord);
-    }
-
-    public int countRegistrationsByEvent(Long registrationId, String event) {
-        return dslContext
-                .fetchCount(dslContext.selectFrom(EVENT_REGISTRATION)
-                        .where(EVENT_REGISTRATION.REGISTRATION_ID.eq(registrationId))
-                        .and(EVENT_REGISTRATION.event().TITLE.eq(event))
-                        .and(EVENT_REGISTRATION.REGISTERED.isTrue()));
+                .orderBy(PERSON.LAST_NAME, PERSON.FIRST_NAME, PERSON.ID)
+                .fetchSize(500)
+                .fetchLazy()) {
+            EventRegistrationRow row = null;
+            for (var r : cursor) {
+                if (row == null || !row.personId().equals(r.value1())) {
+                    if (row != null) {
+                        consumer.accept(row);
+                    }
+                    row = new EventRegistrationRow(r.value1(), r.value2(), r.value3(), new BitSet(events.size()));
+                }
+                var eventIndex = eventIndexes.get(r.value4());
+                if (eventIndex != null && Boolean.TRUE.equals(r.value5())) {
+                    row.registrations().set(eventIndex);
+                }
+            }
+            if (row != null) {
+                consumer.accept(row);
+            }
+        }
     }
 
+    /**
+     * Finds the event registration of the person for the event of the registration using
+     * the primary key.
+     */
     public Optional<EventRegistrationRecord> findByRegistrationIdAndEventIdAndPersonId(Long registrationId, Long eventId, Long personId) {
         return dslContext
                 .selectFrom(EVENT_REGISTRATION)
@@ -1,24 +1,15 @@
 package ch.martinelli.oss.registration.domain;
 
-import org.jooq.Record;
+import java.util.BitSet;
 
-import java.util.Arrays;
-import java.util.LinkedHashMap;
-import java.util.Map;
+/**
+ * A person of an {@link EventRegistrationMatrix}. Bit {@code i} of the registrations is
+ * set if the person is registered for the event in column {@code i} of the matrix.
+ */
+public record EventRegistrationRow(Long personId, String lastName, String firstName, BitSet registrations) {
 
-import static ch.martinelli.oss.registration.db.tables.Person.PERSON;
-
-public record EventRegistrationRow(String lastName, String firstName, Map<String, Boolean> registrations) {
-
-    public static EventRegistrationRow fromRecord(Record dataRecord) {
-        var lastName = dataRecord.get(PERSON.LAST_NAME);
-        var firstName = dataRecord.get(PERSON.FIRST_NAME);
-
-        var registrations = new LinkedHashMap<String, Boolean>(); // Keep order
-        Arrays.stream(dataRecord.fields())
-            .filter(f -> f.getType() == Boolean.class)
-            .forEach(f -> registrations.put(f.getName(), dataRecord.get(f, Boolean.class)));
-
-        return new EventRegistrationRow(lastName, firstName, registrations);
+    public boolean isRegistered(int eventIndex) {
+        return registrations.get(eventIndex);
     }
-}
\ No newline at end of file
+
+}
@@ -1,74 +1,87 @@
 package ch.martinelli.oss.registration.domain;
 
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.util.TreeSet;
+import java.io.OutputStream;
 
 import static com.vaadin.flow.i18n.I18NProvider.translate;
 
 @Service
 public class EventRegistrationService {
 
+    // Rows kept in memory by the streaming workbook, older rows are flushed to disk
+    private static final int ROW_ACCESS_WINDOW = 100;
+
+    private static final int MAX_COLUMN_WIDTH = 60;
+
     private final EventRegistrationRepository eventRegistrationRepository;
 
     public EventRegistrationService(EventRegistrationRepository eventRegistrationRepository) {
         this.eventRegistrationRepository = eventRegistrationRepository;
     }
 
-    @SuppressWarnings("java:S112")
-    public byte[] createEventRegistrationExcel(Long registrationId) {
-        var eventRegistrationRows = eventRegistrationRepository.getEventRegistrationMatrix(registrationId);
-
-        try (var workbook = new XSSFWorkbook()) {
+    /**
+     * Writes the event registrations as Excel file to the output stream. The rows are
+     * streamed from the database into a streaming workbook, so the memory used does not
+     * depend on the number of persons. Column widths are estimated from the text lengths
+     * instead of measuring the text with fonts.
+     * <p>
+     * The export runs in a read-only transaction, as the PostgreSQL driver only streams a
+     * cursor with a fetch size outside of auto-commit.
+     */
+    @Transactional(readOnly = true)
+    public void writeEventRegistrationExcel(Long registrationId, OutputStream outputStream) throws IOException {
+        var events = eventRegistrationRepository.findMatrixEvents(registrationId);
+
+        var workbook = new SXSSFWorkbook(ROW_ACCESS_WINDOW);
+        try (workbook) {
             var sheet = workbook.createSheet(translate("event.registrations"));
-
-            // First, collect all possible registration types (Map keys).
-            // Using TreeSet for sorted columns
-            var allRegistrationTypes = new TreeSet<String>();
-
-            for (var eventRegistrationRow : eventRegistrationRows) {
-                allRegistrationTypes.addAll(eventRegistrationRow.registrations().keySet());
-            }
+            var columnLengths = new int[events.size() + 2];
 
             var headerRow = sheet.createRow(0);
-            headerRow.createCell(0).setCellValue(translate("last.name"));
-            headerRow.createCell(1).setCellValue(translate("first.name"));
-            var columnIndex = 2;
-            for (var registrationType : allRegistrationTypes) {
-                headerRow.createCell(columnIndex++).setCellValue(registrationType);
+            setCellValue(headerRow.createCell(0), translate("last.name"), columnLengths, 0);
+            setCellValue(headerRow.createCell(1), translate("first.name"), columnLengths, 1);
+            for (var i = 0; i < events.size(); i++) {
+                setCellValue(headerRow.createCell(i + 2), events.get(i).getTitle(), columnLengths, i + 2);
             }
 
-            var rowIndex = 1;
-            for (var eventRegistrationRow : eventRegistrationRows) {
-                var dataRow = sheet.createRow(rowIndex++);
-                dataRow.createCell(0).setCellValue(eventRegistrationRow.lastName());
-                dataRow.createCell(1).setCellValue(eventRegistrationRow.firstName());
-
-                columnIndex = 2;
-                for (var registrationType : allRegistrationTypes) {
-                    var cell = dataRow.createCell(columnIndex++);
-                    var value = eventRegistrationRow.registrations().get(registrationType);
-                    if (Boolean.TRUE.equals(value)) {
-                        cell.setCellValue("X");
-                    }
-                    // false values remain empty
+            eventRegistrationRepository.forEachEventRegistrationRow(registrationId, events, eventRegistrationRow -> {
+                var dataRow = sheet.createRow(sheet.getLastRowNum() + 1);
+                setCellValue(dataRow.createCell(0), eventRegistrationRow.lastName(), columnLengths, 0);
+                setCellValue(dataRow.createCell(1), eventRegistrationRow.firstName(), columnLengths, 1);
+
+                // Only registered events get a cell, false values remain empty
+                var registrations = eventRegistrationRow.registrations();
+                for (var i = registrations.nextSetBit(0); i >= 0; i = registrations.nextSetBit(i + 1)) {
+                    dataRow.createCell(i + 2).setCellValue("X");
                 }
-            }
+            });
 
-            for (var i = 0; i < allRegistrationTypes.size() + 2; i++) {
-                sheet.autoSizeColumn(i);
-            }
+            setColumnWidths(sheet, columnLengths);
 
-            try (var fileOut = new ByteArrayOutputStream()) {
-                workbook.write(fileOut);
-                return fileOut.toByteArray();
-            }
+            workbook.write(outputStream);
+        }
+        finally {
+            workbook.dispose();
+        }
+    }
+
+    private static void setCellValue(Cell cell, String value, int[] columnLengths, int columnIndex) {
+        cell.setCellValue(value);
+        if (value != null) {
+            columnLengths[columnIndex] = Math.max(columnLengths[columnIndex], value.length());
         }
-        catch (IOException e) {
-            throw new RuntimeException(e);
+    }
+
+    private static void setColumnWidths(Sheet sheet, int[] columnLengths) {
+        for (var i = 0; i < columnLengths.length; i++) {
+            // Width in 1/256 of a character, plus some padding
+            sheet.setColumnWidth(i, Math.min(columnLengths[i] + 2, MAX_COLUMN_WIDTH) * 256);
         }
     }
 
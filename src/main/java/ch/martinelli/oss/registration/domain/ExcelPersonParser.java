@@ -1,20 +1,34 @@
 package ch.martinelli.oss.registration.domain;
 
-import org.apache.poi.ss.usermodel.Cell;
-import org.apache.poi.ss.usermodel.CellType;
-import org.apache.poi.ss.usermodel.Row;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
-
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import javax.xml.parsers.ParserConfigurationException;
 import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Utility class to parse person data from Excel files. Expected Excel format: - First row
  * is header - Columns: MITGLIEDERNR, VORNAME, NACHNAME, STRASSE, PLZ, ORT, EMAIL, EMAIL
  * ALTERNATIV, KATEGORIE, ZUSATZ, RIEGEN
+ * <p>
+ * The first sheet is read with the SAX based event API of POI instead of loading the
+ * whole workbook, so only the shared strings and the current row are kept in memory.
  */
 public class ExcelPersonParser {
 
@@ -37,21 +51,11 @@ public class ExcelPersonParser {
     public List<ExcelPersonData> parseExcelFile(InputStream inputStream) throws IOException {
         List<ExcelPersonData> persons = new ArrayList<>();
 
-        try (var workbook = new XSSFWorkbook(inputStream)) {
-            var sheet = workbook.getSheetAt(0);
-
-            // Skip header row (row 0)
-            for (var i = 1; i <= sheet.getLastRowNum(); i++) {
-                var row = sheet.getRow(i);
-                if (row == null || isRowEmpty(row)) {
-                    continue;
-                }
-
-                var personData = parseRow(row);
-                if (personData != null) {
-                    persons.add(personData);
-                }
-            }
+        try (var opcPackage = OPCPackage.open(inputStream)) {
+            parse(opcPackage, persons::add);
+        }
+        catch (OpenXML4JException e) {
+            throw new IOException(e);
         }
 
         return persons;
@@ -67,24 +71,58 @@ public class ExcelPersonParser {
         return parseExcelFile(new ByteArrayInputStream(data));
     }
 
-    private ExcelPersonData parseRow(Row row) {
+    /**
+     * Parse Excel file and pass each person to the consumer as soon as its row is read.
+     * The file is opened read only and not loaded into memory.
+     * @param file Excel file
+     * @param consumer receives the parsed person data in the order of the rows
+     * @throws IOException if file cannot be read or is invalid
+     */
+    public void parseExcelFile(File file, Consumer<ExcelPersonData> consumer) throws IOException {
+        try (var opcPackage = OPCPackage.open(file, PackageAccess.READ)) {
+            parse(opcPackage, consumer);
+        }
+        catch (OpenXML4JException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private void parse(OPCPackage opcPackage, Consumer<ExcelPersonData> consumer)
+            throws IOException, OpenXML4JException {
+        try {
+            var sharedStrings = new ReadOnlySharedStringsTable(opcPackage);
+            var sheets = new XSSFReader(opcPackage).getSheetsData();
+            if (!sheets.hasNext()) {
+                return;
+            }
+            try (var sheet = sheets.next()) {
+                var xmlReader = XMLHelper.newXMLReader();
+                xmlReader.setContentHandler(new SheetHandler(sharedStrings, consumer));
+                xmlReader.parse(new InputSource(sheet));
+            }
+        }
+        catch (SAXException | ParserConfigurationException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private static ExcelPersonData parseRow(Object[] values) {
         // Extract member ID (numeric in Excel, convert to Integer)
         Integer memberId = null;
-        var memberIdCell = row.getCell(COL_MEMBER_ID);
-        if (memberIdCell != null && memberIdCell.getCellType() == CellType.NUMERIC) {
-            memberId = (int) memberIdCell.getNumericCellValue();
+        if (values[COL_MEMBER_ID] instanceof Double number) {
+            memberId = number.intValue();
         }
 
         // Extract first name
-        var firstName = getCellValueAsString(row.getCell(COL_FIRST_NAME));
+        var firstName = getValueAsString(values[COL_FIRST_NAME]);
 
         // Extract last name
-        var lastName = getCellValueAsString(row.getCell(COL_LAST_NAME));
+        var lastName = getValueAsString(values[COL_LAST_NAME]);
 
         // Extract email (prefer EMAIL, fall back to EMAIL ALTERNATIV)
-        var email = getCellValueAsString(row.getCell(COL_EMAIL));
+        var email = getValueAsString(values[COL_EMAIL]);
         if (email == null || email.isBlank()) {
-            email = getCellValueAsString(row.getCell(COL_EMAIL_ALT));
+            email = getValueAsString(values[COL_EMAIL_ALT]);
         }
 
         // Skip rows without required fields
@@ -95,28 +133,111 @@ public class ExcelPersonParser {
         return new ExcelPersonData(memberId, firstName, lastName, email);
     }
 
-    private String getCellValueAsString(Cell cell) {
-        if (cell == null) {
-            return null;
-        }
-
-        return switch (cell.getCellType()) {
-            case STRING -> cell.getStringCellValue().trim();
-            case NUMERIC -> String.valueOf((long) cell.getNumericCellValue());
-            case BOOLEAN -> String.valueOf(cell.getBooleanCellValue());
-            case FORMULA -> cell.getRichStringCellValue().getString().trim();
-            default -> null;
+    private static String getValueAsString(Object value) {
+        return switch (value) {
+            case String string -> string.trim();
+            case Double number -> String.valueOf(number.longValue());
+            case Boolean bool -> String.valueOf(bool);
+            case null, default -> null;
         };
     }
 
-    private boolean isRowEmpty(Row row) {
-        for (var i = 0; i < row.getLastCellNum(); i++) {
-            var cell = row.getCell(i);
-            if (cell != null && cell.getCellType() != CellType.BLANK) {
-                return false;
+    /**
+     * Collects the values of the used columns of a row and parses the row at its end.
+     * Strings are resolved from the shared strings, numbers are {@link Double} and
+     * booleans {@link Boolean}. Formula cells use their cached value.
+     */
+    private static class SheetHandler extends DefaultHandler {
+
+        private final ReadOnlySharedStringsTable sharedStrings;
+
+        private final Consumer<ExcelPersonData> consumer;
+
+        private final Object[] values = new Object[COL_EMAIL_ALT + 1];
+
+        private final StringBuilder text = new StringBuilder();
+
+        private int rowIndex = -1;
+
+        private int columnIndex;
+
+        private String cellType;
+
+        private boolean inValue;
+
+        SheetHandler(ReadOnlySharedStringsTable sharedStrings, Consumer<ExcelPersonData> consumer) {
+            this.sharedStrings = sharedStrings;
+            this.consumer = consumer;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            switch (localName) {
+                case "row" -> {
+                    var reference = attributes.getValue("r");
+                    rowIndex = reference != null ? Integer.parseInt(reference) - 1 : rowIndex + 1;
+                    columnIndex = -1;
+                    Arrays.fill(values, null);
+                }
+                case "c" -> {
+                    var reference = attributes.getValue("r");
+                    columnIndex = reference != null ? new CellReference(reference).getCol() : columnIndex + 1;
+                    cellType = attributes.getValue("t");
+                    text.setLength(0);
+                }
+                // The value of a cell or the text of an inline string, not the formula
+                case "v", "t" -> inValue = true;
+                default -> {
+                    // Other elements are not needed
+                }
             }
         }
-        return true;
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            if (inValue) {
+                text.append(ch, start, length);
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            switch (localName) {
+                case "v", "t" -> inValue = false;
+                case "c" -> {
+                    if (columnIndex < values.length) {
+                        values[columnIndex] = getCellValue();
+                    }
+                }
+                case "row" -> {
+                    // Skip header row (row 0)
+                    if (rowIndex > 0) {
+                        var personData = parseRow(values);
+                        if (personData != null) {
+                            consumer.accept(personData);
+                        }
+                    }
+                }
+                default -> {
+                    // Other elements are not needed
+                }
+            }
+        }
+
+        private Object getCellValue() {
+            if (text.isEmpty()) {
+                return null;
+            }
+            return switch (cellType == null ? "n" : cellType) {
+                case "s" -> sharedStrings.getItemAt(Integer.parseInt(text.toString())).getString();
+                case "str", "inlineStr" -> text.toString();
+                case "b" -> "1".contentEquals(text);
+                case "n" -> Double.valueOf(text.toString());
+                // Errors and dates in ISO format are not used
+                default -> null;
+            };
+        }
+
     }
 
 }
@@ -0,0 +1,45 @@
+package ch.martinelli.oss.registration.domain;
+
+import org.vaadin.lineawesome.LineAwesomeIcon;
+
+/**
+ * Text formats for exports that are processed by scripts rather than opened in Excel.
+ */
+public enum ExportFormat {
+
+    CSV("csv", "text/csv", LineAwesomeIcon.FILE_CSV_SOLID),
+    TSV("tsv", "text/tab-separated-values", LineAwesomeIcon.FILE_ALT_SOLID),
+    JSONL("jsonl", "application/jsonl", LineAwesomeIcon.FILE_CODE_SOLID);
+
+    private final String fileExtension;
+
+    private final String contentType;
+
+    private final LineAwesomeIcon icon;
+
+    ExportFormat(String fileExtension, String contentType, LineAwesomeIcon icon) {
+        this.fileExtension = fileExtension;
+        this.contentType = contentType;
+        this.icon = icon;
+    }
+
+    public String fileExtension() {
+        return fileExtension;
+    }
+
+    public String contentType() {
+        return contentType + "; charset=UTF-8";
+    }
+
+    public LineAwesomeIcon icon() {
+        return icon;
+    }
+
+    /**
+     * @return the key of the button label in the translations
+     */
+    public String translationKey() {
+        return "export." + fileExtension;
+    }
+
+}
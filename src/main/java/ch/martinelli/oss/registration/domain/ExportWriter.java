@@ -0,0 +1,126 @@
+package ch.martinelli.oss.registration.domain;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Writes rows in one of the {@link ExportFormat}s. Every row is written to the output
+ * stream as soon as it is passed in. CSV values are quoted when needed, TSV values must
+ * not contain tabs or line breaks, so these are replaced by spaces. JSON Lines writes an
+ * object per row with the column names as keys.
+ */
+final class ExportWriter {
+
+    private final ExportFormat format;
+
+    private final List<String> columns;
+
+    private final Writer writer;
+
+    ExportWriter(ExportFormat format, List<String> columns, OutputStream outputStream) {
+        this.format = format;
+        this.columns = columns;
+        this.writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+        if (format != ExportFormat.JSONL) {
+            writeLine(columns);
+        }
+    }
+
+    /**
+     * @param values the values in the order of the columns, strings, numbers, booleans,
+     * dates or null
+     */
+    void writeRow(List<?> values) {
+        if (format == ExportFormat.JSONL) {
+            writeJson(values);
+        }
+        else {
+            writeLine(values);
+        }
+    }
+
+    void flush() throws IOException {
+        writer.flush();
+    }
+
+    private void writeLine(List<?> values) {
+        try {
+            for (var i = 0; i < values.size(); i++) {
+                if (i > 0) {
+                    writer.write(format == ExportFormat.TSV ? '\t' : ',');
+                }
+                var value = values.get(i) != null ? values.get(i).toString() : "";
+                writer.write(format == ExportFormat.TSV ? escapeTsv(value) : escapeCsv(value));
+            }
+            writer.write('\n');
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeJson(List<?> values) {
+        try {
+            writer.write('{');
+            for (var i = 0; i < columns.size(); i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                writer.write(quoteJson(columns.get(i)));
+                writer.write(':');
+                var value = values.get(i);
+                if (value == null || value instanceof Boolean || value instanceof Number) {
+                    writer.write(String.valueOf(value));
+                }
+                else {
+                    writer.write(quoteJson(value.toString()));
+                }
+            }
+            writer.write("}\n");
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String escapeCsv(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    private static String escapeTsv(String value) {
+        return value.replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+    }
+
+    private static String quoteJson(String value) {
+        var json = new StringBuilder(value.length() + 2).append('"');
+        for (var i = 0; i < value.length(); i++) {
+            var c = value.charAt(i);
+            switch (c) {
+                case '"' -> json.append("\\\"");
+                case '\\' -> json.append("\\\\");
+                case '\n' -> json.append("\\n");
+                case '\r' -> json.append("\\r");
+                case '\t' -> json.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        json.append("\\u%04x".formatted((int) c));
+                    }
+                    else {
+                        json.append(c);
+                    }
+                }
+            }
+        }
+        return json.append('"').toString();
+    }
+
+}
@@ -0,0 +1,134 @@
+package ch.martinelli.oss.registration.domain;
+
+import ch.martinelli.oss.jooqspring.JooqDAO;
+import ch.martinelli.oss.registration.db.tables.MailOutbox;
+import ch.martinelli.oss.registration.db.tables.records.MailOutboxRecord;
+import org.jooq.DSLContext;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+import static ch.martinelli.oss.registration.db.enums.MailOutboxKind.CONFIRMATION;
+import static ch.martinelli.oss.registration.db.enums.MailOutboxStatus.FAILED;
+import static ch.martinelli.oss.registration.db.enums.MailOutboxStatus.PENDING;
+import static ch.martinelli.oss.registration.db.enums.MailOutboxStatus.SENDING;
+import static ch.martinelli.oss.registration.db.enums.MailOutboxStatus.SENT;
+import static ch.martinelli.oss.registration.db.tables.MailOutbox.MAIL_OUTBOX;
+import static ch.martinelli.oss.registration.db.tables.RegistrationEmail.REGISTRATION_EMAIL;
+import static org.jooq.impl.DSL.select;
+import static org.jooq.impl.DSL.val;
+
+// @formatter:off
+@Repository
+public class MailOutboxRepository extends JooqDAO<MailOutbox, MailOutboxRecord, Long> {
+
+    public MailOutboxRepository(DSLContext dslContext) {
+        super(dslContext, MAIL_OUTBOX);
+    }
+
+    /**
+     * Queues every registration email of the registration that has not been sent yet.
+     * Registration emails that are already queued are skipped.
+     * @return the number of queued registration emails
+     */
+    @Transactional
+    public int enqueueUnsent(Long registrationId, String replyTo) {
+        return dslContext
+                .insertInto(MAIL_OUTBOX, MAIL_OUTBOX.REGISTRATION_EMAIL_ID, MAIL_OUTBOX.REPLY_TO)
+                .select(select(REGISTRATION_EMAIL.ID, val(replyTo))
+                        .from(REGISTRATION_EMAIL)
+                        .where(REGISTRATION_EMAIL.REGISTRATION_ID.eq(registrationId))
+                        .and(REGISTRATION_EMAIL.SENT_AT.isNull()))
+                .onConflictDoNothing()
+                .execute();
+    }
+
+    /**
+     * Queues the invitation of a single registration email, e.g. to send it again after it
+     * failed.
+     * @return true if the invitation was queued, false if it is already queued
+     */
+    @Transactional
+    public boolean enqueueInvitation(Long registrationEmailId, String replyTo) {
+        return dslContext
+                .insertInto(MAIL_OUTBOX, MAIL_OUTBOX.REGISTRATION_EMAIL_ID, MAIL_OUTBOX.REPLY_TO)
+                .values(registrationEmailId, replyTo)
+                .onConflictDoNothing()
+                .execute() > 0;
+    }
+
+    /**
+     * Queues the confirmation of a registration. The confirmation is rendered when it is
+     * sent.
+     */
+    @Transactional
+    public void enqueueConfirmation(Long registrationEmailId, boolean firstRegistration) {
+        dslContext
+                .insertInto(MAIL_OUTBOX)
+                .set(MAIL_OUTBOX.REGISTRATION_EMAIL_ID, registrationEmailId)
+                .set(MAIL_OUTBOX.KIND, CONFIRMATION)
+                .set(MAIL_OUTBOX.FIRST_REGISTRATION, firstRegistration)
+                .execute();
+    }
+
+    /**
+     * Claims up to {@code limit} due messages for sending. Rows locked by another worker
+     * are skipped. A claimed row is leased until {@code leaseUntil}; if the worker dies
+     * before it reports back, the row becomes due again once the lease has expired.
+     */
+    @Transactional
+    public List<MailOutboxRecord> claim(int limit, LocalDateTime leaseUntil) {
+        var due = select(MAIL_OUTBOX.ID)
+                .from(MAIL_OUTBOX)
+                .where(MAIL_OUTBOX.STATUS.in(PENDING, SENDING))
+                .and(MAIL_OUTBOX.NEXT_ATTEMPT_AT.le(LocalDateTime.now()))
+                .orderBy(MAIL_OUTBOX.NEXT_ATTEMPT_AT, MAIL_OUTBOX.ID)
+                .limit(limit)
+                .forUpdate()
+                .skipLocked();
+
+        return dslContext
+                .update(MAIL_OUTBOX)
+                .set(MAIL_OUTBOX.STATUS, SENDING)
+                .set(MAIL_OUTBOX.ATTEMPTS, MAIL_OUTBOX.ATTEMPTS.plus(1))
+                .set(MAIL_OUTBOX.NEXT_ATTEMPT_AT, leaseUntil)
+                .where(MAIL_OUTBOX.ID.in(due))
+                .returning()
+                .fetch();
+    }
+
+    @Transactional
+    public void markSent(Collection<Long> ids) {
+        dslContext
+                .update(MAIL_OUTBOX)
+                .set(MAIL_OUTBOX.STATUS, SENT)
+                .set(MAIL_OUTBOX.LAST_ERROR, (String) null)
+                .where(MAIL_OUTBOX.ID.in(ids))
+                .execute();
+    }
+
+    @Transactional
+    public void markForRetry(Long id, String error, LocalDateTime nextAttemptAt) {
+        dslContext
+                .update(MAIL_OUTBOX)
+                .set(MAIL_OUTBOX.STATUS, PENDING)
+                .set(MAIL_OUTBOX.LAST_ERROR, error)
+                .set(MAIL_OUTBOX.NEXT_ATTEMPT_AT, nextAttemptAt)
+                .where(MAIL_OUTBOX.ID.eq(id))
+                .execute();
+    }
+
+    @Transactional
+    public void markFailed(Long id, String error) {
+        dslContext
+                .update(MAIL_OUTBOX)
+                .set(MAIL_OUTBOX.STATUS, FAILED)
+                .set(MAIL_OUTBOX.LAST_ERROR, error)
+                .where(MAIL_OUTBOX.ID.eq(id))
+                .execute();
+    }
+
+}
@@ -0,0 +1,281 @@
+package ch.martinelli.oss.registration.domain;
+
+import ch.martinelli.oss.registration.db.tables.records.MailOutboxRecord;
+import ch.martinelli.oss.registration.db.tables.records.RegistrationEmailViewRecord;
+import ch.martinelli.oss.registration.db.tables.records.RegistrationRecord;
+import ch.martinelli.oss.registration.domain.MailingProgressEvent.InvitationStatus;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static ch.martinelli.oss.registration.db.enums.MailOutboxKind.CONFIRMATION;
+import static ch.martinelli.oss.registration.db.enums.MailOutboxKind.INVITATION;
+import static ch.martinelli.oss.registration.db.enums.MailOutboxStatus.FAILED;
+import static ch.martinelli.oss.registration.db.enums.MailOutboxStatus.PENDING;
+import static ch.martinelli.oss.registration.db.enums.MailOutboxStatus.SENT;
+
+/**
+ * Sends the invitations and confirmations queued in the mail outbox. Up to the configured
+ * number of workers run concurrently on virtual threads. Each worker claims a batch of
+ * due messages and hands it to the {@link EmailSender}, which sends the batch over a
+ * single SMTP connection. The sent messages are marked right after every batch, so the
+ * progress of a mailing is never lost. The batch size is bounded by the
+ * {@link MailRateLimiter}, failed messages are handled by the {@link MailRetryPolicy}.
+ * After each batch the progress of the affected mailings is published to the
+ * {@link MailingProgressBroadcaster}. Workers are started by the scheduled poll and by
+ * {@link #wakeUp()}, and keep running as long as they find work.
+ */
+@Component
+public class MailOutboxWorker {
+
+    private static final Logger log = LoggerFactory.getLogger(MailOutboxWorker.class);
+
+    // Error of confirmations the renderer had nothing to render for
+    static final String NO_CONFIRMATION = "No confirmation template or registration email";
+
+    private final MailOutboxRepository mailOutboxRepository;
+
+    private final RegistrationRepository registrationRepository;
+
+    private final RegistrationEmailRepository registrationEmailRepository;
+
+    private final EmailSender emailSender;
+
+    private final ConfirmationRenderer confirmationRenderer;
+
+    private final MailRateLimiter mailRateLimiter;
+
+    private final MailRetryPolicy mailRetryPolicy;
+
+    private final MailingProgressBroadcaster mailingProgressBroadcaster;
+
+    private final Timer deliveryTimer;
+
+    private final int workers;
+
+    private final int batchSize;
+
+    private final Duration lease;
+
+    private final ExecutorService executorService;
+
+    private final AtomicInteger activeWorkers = new AtomicInteger();
+
+    public MailOutboxWorker(MailOutboxRepository mailOutboxRepository, RegistrationRepository registrationRepository,
+            RegistrationEmailRepository registrationEmailRepository, EmailSender emailSender,
+            ConfirmationRenderer confirmationRenderer, MailRateLimiter mailRateLimiter, MailRetryPolicy mailRetryPolicy,
+            MailingProgressBroadcaster mailingProgressBroadcaster, MeterRegistry meterRegistry,
+            @Value("${registration.mail.outbox.workers:4}") int workers,
+            @Value("${registration.mail.outbox.batch-size:10}") int batchSize,
+            @Value("${registration.mail.outbox.lease:5m}") Duration lease) {
+        this.mailOutboxRepository = mailOutboxRepository;
+        this.registrationRepository = registrationRepository;
+        this.registrationEmailRepository = registrationEmailRepository;
+        this.emailSender = emailSender;
+        this.confirmationRenderer = confirmationRenderer;
+        this.mailRateLimiter = mailRateLimiter;
+        this.mailRetryPolicy = mailRetryPolicy;
+        this.mailingProgressBroadcaster = mailingProgressBroadcaster;
+        this.deliveryTimer = Timer.builder("registration.mail.delivery")
+            .description("Time from queuing an email until it has been sent")
+            .register(meterRegistry);
+        this.workers = workers;
+        this.batchSize = batchSize;
+        this.lease = lease;
+        this.executorService = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("mail-outbox-", 1).factory());
+    }
+
+    @Scheduled(fixedDelayString = "${registration.mail.outbox.poll-interval:30s}")
+    public void poll() {
+        wakeUp();
+    }
+
+    /**
+     * Starts idle workers so that newly queued messages are sent without waiting for the
+     * next poll.
+     */
+    public void wakeUp() {
+        // Rows queued in the current transaction are only visible after the commit
+        AfterCommit.run(this::startWorkers);
+    }
+
+    private void startWorkers() {
+        int active;
+        while ((active = activeWorkers.get()) < workers) {
+            if (activeWorkers.compareAndSet(active, active + 1)) {
+                executorService.execute(this::drain);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executorService.shutdownNow();
+    }
+
+    private void drain() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                var permits = mailRateLimiter.acquire(batchSize);
+                var batch = mailOutboxRepository.claim(permits, LocalDateTime.now().plus(lease));
+                mailRateLimiter.refund(permits - batch.size());
+                if (batch.isEmpty()) {
+                    break;
+                }
+                send(batch);
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        catch (Exception e) {
+            log.error("Error while processing the mail outbox", e);
+        }
+        finally {
+            activeWorkers.decrementAndGet();
+        }
+    }
+
+    private void send(List<MailOutboxRecord> batch) {
+        var startedAt = System.nanoTime();
+        var registrations = new HashMap<Long, Optional<RegistrationRecord>>();
+        var invitations = new HashMap<Long, RegistrationEmailViewRecord>();
+        var statuses = new HashMap<Long, InvitationStatus>();
+        var messages = new HashMap<Long, MailOutboxRecord>();
+        var mailMessages = new LinkedHashMap<Long, SimpleMailMessage>();
+        var alreadySent = new ArrayList<Long>();
+        for (var message : batch) {
+            try {
+                var mailMessage = createMailMessage(message, registrations, invitations);
+                if (mailMessage.isPresent()) {
+                    messages.put(message.getId(), message);
+                    mailMessages.put(message.getId(), mailMessage.get());
+                }
+                else if (message.getKind() == CONFIRMATION) {
+                    log.warn("Mail outbox message {} has no confirmation to send", message.getId());
+                    mailOutboxRepository.markFailed(message.getId(), NO_CONFIRMATION);
+                }
+                else {
+                    alreadySent.add(message.getId());
+                }
+            }
+            catch (Exception e) {
+                statuses.put(message.getId(), handleFailure(message, e));
+            }
+        }
+        if (!alreadySent.isEmpty()) {
+            mailOutboxRepository.markSent(alreadySent);
+        }
+        if (!mailMessages.isEmpty()) {
+            var failures = emailSender.send(mailMessages);
+
+            var sent = messages.values().stream().filter(message -> !failures.containsKey(message.getId())).toList();
+            var sentInvitations = sent.stream()
+                .filter(message -> message.getKind() == INVITATION)
+                .map(MailOutboxRecord::getRegistrationEmailId)
+                .toList();
+            if (!sentInvitations.isEmpty()) {
+                emailSender.markSent(sentInvitations);
+            }
+            if (!sent.isEmpty()) {
+                mailOutboxRepository.markSent(sent.stream().map(MailOutboxRecord::getId).toList());
+            }
+            var now = LocalDateTime.now();
+            sent.forEach(message -> {
+                deliveryTimer.record(Duration.between(message.getCreatedAt(), now));
+                statuses.put(message.getId(), new InvitationStatus(message.getRegistrationEmailId(), SENT, null));
+            });
+            failures.forEach((id, e) -> statuses.put(id, handleFailure(messages.get(id), e)));
+        }
+        publishProgress(invitations, statuses, startedAt);
+    }
+
+    /**
+     * @return the message to send or empty if the invitation has already been sent, e.g.
+     * by a worker that died before it could report back, or if there is no confirmation
+     * to send, see {@link ConfirmationRenderer#render(Long, boolean)}
+     */
+    private Optional<SimpleMailMessage> createMailMessage(MailOutboxRecord message,
+            Map<Long, Optional<RegistrationRecord>> registrations, Map<Long, RegistrationEmailViewRecord> invitations) {
+        if (message.getKind() == CONFIRMATION) {
+            return confirmationRenderer.render(message.getRegistrationEmailId(),
+                    Boolean.TRUE.equals(message.getFirstRegistration()));
+        }
+
+        var registrationEmail = registrationEmailRepository.findByIdFromView(message.getRegistrationEmailId())
+            .orElseThrow(() -> new IllegalStateException(
+                    "Registration email %d not found".formatted(message.getRegistrationEmailId())));
+        if (registrationEmail.getSentAt() != null) {
+            return Optional.empty();
+        }
+        invitations.put(message.getId(), registrationEmail);
+        var registration = registrations
+            .computeIfAbsent(registrationEmail.getRegistrationId(), registrationRepository::findById)
+            .orElseThrow(() -> new IllegalStateException(
+                    "Registration %d not found".formatted(registrationEmail.getRegistrationId())));
+        return Optional.of(emailSender.createInvitation(registration, registrationEmail, message.getReplyTo()));
+    }
+
+    /**
+     * Reschedules the message with backoff or moves it to the dead letter state
+     * {@code FAILED}. The worker does not wait for the retry, it continues with the next
+     * batch.
+     * @return the new status of the message
+     */
+    private InvitationStatus handleFailure(MailOutboxRecord message, Exception e) {
+        var error = Objects.requireNonNullElse(e.getMessage(), e.getClass().getName());
+        var nextAttemptAt = mailRetryPolicy.nextAttemptAt(message.getAttempts(), e);
+        if (nextAttemptAt.isPresent()) {
+            log.warn("Error sending mail outbox message {}, attempt {}, retry at {}", message.getId(),
+                    message.getAttempts(), nextAttemptAt.get(), e);
+            mailOutboxRepository.markForRetry(message.getId(), error, nextAttemptAt.get());
+            return new InvitationStatus(message.getRegistrationEmailId(), PENDING, error);
+        }
+        else {
+            log.error("Giving up on mail outbox message {} after {} attempts", message.getId(), message.getAttempts(),
+                    e);
+            mailOutboxRepository.markFailed(message.getId(), error);
+            return new InvitationStatus(message.getRegistrationEmailId(), FAILED, error);
+        }
+    }
+
+    /**
+     * Publishes the progress of every registration with invitations in the batch.
+     */
+    private void publishProgress(Map<Long, RegistrationEmailViewRecord> invitations,
+            Map<Long, InvitationStatus> statuses, long startedAt) {
+        var changedInvitations = new HashMap<Long, List<InvitationStatus>>();
+        invitations.forEach((id, registrationEmail) -> {
+            var status = statuses.get(id);
+            if (status != null) {
+                changedInvitations.computeIfAbsent(registrationEmail.getRegistrationId(), key -> new ArrayList<>())
+                    .add(status);
+            }
+        });
+        changedInvitations.forEach((registrationId, changed) -> {
+            var sent = (int) changed.stream().filter(status -> status.status() == SENT).count();
+            mailingProgressBroadcaster.publish(registrationId,
+                    registrationEmailRepository.getMailingProgress(registrationId), sent, startedAt, changed);
+        });
+    }
+
+}
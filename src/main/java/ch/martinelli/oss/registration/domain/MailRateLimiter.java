@@ -0,0 +1,123 @@
+package ch.martinelli.oss.registration.domain;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Token bucket rate limiter for outgoing emails. Two buckets are used, one with a
+ * capacity of {@code per-minute} tokens refilled over a minute and one with a capacity of
+ * {@code per-day} tokens refilled over a day. A value of 0 disables the bucket.
+ */
+@Component
+public class MailRateLimiter {
+
+    private final Bucket perMinute;
+
+    private final Bucket perDay;
+
+    // A lock instead of synchronized, so waiting virtual threads do not pin their carrier
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Condition refunded = lock.newCondition();
+
+    public MailRateLimiter(@Value("${registration.mail.rate-limit.per-minute:0}") long perMinute,
+            @Value("${registration.mail.rate-limit.per-day:0}") long perDay) {
+        this.perMinute = new Bucket(perMinute, Duration.ofMinutes(1));
+        this.perDay = new Bucket(perDay, Duration.ofDays(1));
+    }
+
+    /**
+     * Waits until at least one token is available and takes up to {@code max} tokens.
+     * @return the number of tokens taken, between 1 and {@code max}
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public int acquire(int max) throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (true) {
+                var now = System.nanoTime();
+                perMinute.refill(now);
+                perDay.refill(now);
+                var available = Math.min(max, Math.min(perMinute.available(), perDay.available()));
+                if (available >= 1) {
+                    perMinute.take(available);
+                    perDay.take(available);
+                    return (int) available;
+                }
+                var waitNanos = Math.max(perMinute.nanosUntilToken(), perDay.nanosUntilToken());
+                refunded.awaitNanos(Math.max(1, waitNanos));
+            }
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns tokens that were acquired but not used.
+     */
+    public void refund(int tokens) {
+        if (tokens > 0) {
+            lock.lock();
+            try {
+                perMinute.put(tokens);
+                perDay.put(tokens);
+                refunded.signalAll();
+            }
+            finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private static final class Bucket {
+
+        private final long capacity;
+
+        private final double nanosPerToken;
+
+        private double tokens;
+
+        private long refilledAt;
+
+        Bucket(long capacity, Duration period) {
+            this.capacity = capacity;
+            this.nanosPerToken = capacity > 0 ? (double) period.toNanos() / capacity : 0;
+            this.tokens = capacity;
+            this.refilledAt = System.nanoTime();
+        }
+
+        void refill(long now) {
+            if (capacity > 0) {
+                tokens = Math.min(capacity, tokens + (now - refilledAt) / nanosPerToken);
+                refilledAt = now;
+            }
+        }
+
+        long available() {
+            return capacity > 0 ? (long) tokens : Long.MAX_VALUE;
+        }
+
+        void take(long count) {
+            if (capacity > 0) {
+                tokens -= count;
+            }
+        }
+
+        void put(long count) {
+            if (capacity > 0) {
+                tokens = Math.min(capacity, tokens + count);
+            }
+        }
+
+        long nanosUntilToken() {
+            return capacity > 0 ? (long) Math.ceil((1 - tokens) * nanosPerToken) : 0;
+        }
+
+    }
+
+}
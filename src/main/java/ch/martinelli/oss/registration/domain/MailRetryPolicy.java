@@ -0,0 +1,97 @@
+package ch.martinelli.oss.registration.domain;
+
+import jakarta.mail.internet.AddressException;
+import org.eclipse.angus.mail.smtp.SMTPAddressFailedException;
+import org.eclipse.angus.mail.smtp.SMTPSendFailedException;
+import org.eclipse.angus.mail.smtp.SMTPSenderFailedException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.MailParseException;
+import org.springframework.mail.MailPreparationException;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Decides whether and when a failed email is retried.
+ * <p>
+ * SMTP errors are classified by the reply code of the server: 4xx replies are transient
+ * and retried, 5xx replies are permanent. Errors that will not go away by retrying, like
+ * invalid addresses or a missing email text, are permanent as well. Everything else, e.g.
+ * connection problems, is treated as transient.
+ * <p>
+ * Transient errors are retried with exponential backoff and jitter until the maximum
+ * number of attempts is reached.
+ */
+@Component
+public class MailRetryPolicy {
+
+    private final int maxAttempts;
+
+    private final Duration retryDelay;
+
+    private final Duration maxRetryDelay;
+
+    public MailRetryPolicy(@Value("${registration.mail.outbox.max-attempts:5}") int maxAttempts,
+            @Value("${registration.mail.outbox.retry-delay:1m}") Duration retryDelay,
+            @Value("${registration.mail.outbox.max-retry-delay:1h}") Duration maxRetryDelay) {
+        this.maxAttempts = maxAttempts;
+        this.retryDelay = retryDelay;
+        this.maxRetryDelay = maxRetryDelay;
+    }
+
+    /**
+     * @param attempts the number of attempts made so far, including the failed one
+     * @return the time of the next attempt or empty if the email should not be retried
+     */
+    public Optional<LocalDateTime> nextAttemptAt(int attempts, Throwable error) {
+        if (attempts >= maxAttempts || isPermanent(error)) {
+            return Optional.empty();
+        }
+        return Optional.of(LocalDateTime.now().plus(backoff(attempts)));
+    }
+
+    /**
+     * Exponential backoff with equal jitter: the delay doubles with every attempt up to
+     * the maximum and a random value between half and the full delay is used.
+     */
+    Duration backoff(int attempts) {
+        var exponent = Math.min(Math.max(attempts - 1, 0), 30);
+        var delay = retryDelay.multipliedBy(1L << exponent);
+        if (delay.compareTo(maxRetryDelay) > 0) {
+            delay = maxRetryDelay;
+        }
+        var half = delay.toMillis() / 2;
+        return Duration.ofMillis(half + ThreadLocalRandom.current().nextLong(half + 1));
+    }
+
+    boolean isPermanent(Throwable error) {
+        for (var cause = error; cause != null; cause = cause.getCause()) {
+            var returnCode = returnCode(cause);
+            if (returnCode > 0) {
+                return returnCode >= 500;
+            }
+            if (cause instanceof AddressException || cause instanceof MailParseException
+                    || cause instanceof MailPreparationException || cause instanceof IllegalArgumentException
+                    || cause instanceof IllegalStateException) {
+                return true;
+            }
+            if (cause.getCause() == cause) {
+                break;
+            }
+        }
+        return false;
+    }
+
+    private static int returnCode(Throwable error) {
+        return switch (error) {
+            case SMTPAddressFailedException e -> e.getReturnCode();
+            case SMTPSenderFailedException e -> e.getReturnCode();
+            case SMTPSendFailedException e -> e.getReturnCode();
+            default -> -1;
+        };
+    }
+
+}
@@ -0,0 +1,17 @@
+package ch.martinelli.oss.registration.domain;
+
+/**
+ * Progress of sending the invitations of a registration.
+ *
+ * @param total number of registration emails
+ * @param sent number of invitations that have been sent
+ * @param pending number of invitations that are queued or being sent
+ * @param failed number of invitations that failed permanently
+ */
+public record MailingProgress(int total, int sent, int pending, int failed) {
+
+    public boolean isRunning() {
+        return pending > 0;
+    }
+
+}
@@ -0,0 +1,65 @@
+package ch.martinelli.oss.registration.domain;
+
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Distributes mailing progress to the registered listeners, e.g. the views of all
+ * signed-in admins. Listeners are called on the thread of the sender and must hand the
+ * event over to their own thread, e.g. with {@code UI.access}.
+ */
+@Component
+public class MailingProgressBroadcaster {
+
+    private final List<Consumer<MailingProgressEvent>> listeners = new CopyOnWriteArrayList<>();
+
+    private final Map<Long, Throughput> throughputs = new ConcurrentHashMap<>();
+
+    /**
+     * @return a handle that removes the listener again
+     */
+    public Runnable register(Consumer<MailingProgressEvent> listener) {
+        listeners.add(listener);
+        return () -> listeners.remove(listener);
+    }
+
+    /**
+     * Publishes the progress of a mailing after a batch has been sent.
+     * @param sent the number of messages of the registration sent with the batch
+     * @param batchStartedAt the {@link System#nanoTime()} when the batch was started
+     */
+    public void publish(Long registrationId, MailingProgress progress, int sent, long batchStartedAt,
+            List<MailingProgressEvent.InvitationStatus> invitations) {
+        var throughput = progress.isRunning()
+                ? throughputs.computeIfAbsent(registrationId, id -> new Throughput(batchStartedAt))
+                : throughputs.remove(registrationId);
+        var messagesPerSecond = (throughput != null ? throughput : new Throughput(batchStartedAt)).add(sent);
+
+        var event = new MailingProgressEvent(registrationId, progress, messagesPerSecond, invitations);
+        listeners.forEach(listener -> listener.accept(event));
+    }
+
+    private static final class Throughput {
+
+        private final long startedAt;
+
+        private long sent;
+
+        Throughput(long startedAt) {
+            this.startedAt = startedAt;
+        }
+
+        synchronized double add(int count) {
+            sent += count;
+            var seconds = (System.nanoTime() - startedAt) / 1_000_000_000.0;
+            return seconds > 0 ? sent / seconds : 0;
+        }
+
+    }
+
+}
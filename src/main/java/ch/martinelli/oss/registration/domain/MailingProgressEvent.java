@@ -0,0 +1,27 @@
+package ch.martinelli.oss.registration.domain;
+
+import ch.martinelli.oss.registration.db.enums.MailOutboxStatus;
+
+import java.util.List;
+
+/**
+ * Published by the {@link MailOutboxWorker} after each batch with the progress of the
+ * mailing of a registration.
+ *
+ * @param registrationId the registration
+ * @param progress the progress of the whole mailing
+ * @param messagesPerSecond the sending rate since the mailing was started
+ * @param invitations the invitations of the registration that changed with the batch
+ */
+public record MailingProgressEvent(Long registrationId, MailingProgress progress, double messagesPerSecond,
+        List<InvitationStatus> invitations) {
+
+    /**
+     * @param registrationEmailId the registration email of the invitation
+     * @param status the new status of the invitation
+     * @param lastError the error of the last attempt or null if it has been sent
+     */
+    public record InvitationStatus(Long registrationEmailId, MailOutboxStatus status, String lastError) {
+    }
+
+}
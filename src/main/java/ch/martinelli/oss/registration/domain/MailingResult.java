@@ -0,0 +1,10 @@
+package ch.martinelli.oss.registration.domain;
+
+/**
+ * Outcome of creating a mailing.
+ *
+ * @param created number of registration emails that were newly created
+ * @param reused number of registration emails that already existed and were reused
+ */
+public record MailingResult(int created, int reused) {
+}
@@ -2,9 +2,11 @@ package ch.martinelli.oss.registration.domain;
 
 import ch.martinelli.oss.registration.db.tables.records.PersonRecord;
 import org.jooq.impl.DSL;
+import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Service to detect changes between Excel data and existing database records. Matches
@@ -13,6 +15,9 @@ import java.util.*;
 @Service
 public class PersonChangeDetector {
 
+    // Below this number of rows splitting the work costs more than it saves
+    private static final int PARALLEL_THRESHOLD = 1000;
+
     private final PersonRepository personRepository;
 
     public PersonChangeDetector(PersonRepository personRepository) {
@@ -28,27 +33,24 @@ public class PersonChangeDetector {
     public List<PersonChange> detectChanges(List<ExcelPersonData> excelData) {
         // Load all existing persons from database
         List<PersonRecord> allPersons = personRepository.findAll(DSL.trueCondition());
+        var personIndex = new PersonIndex(allPersons);
+
+        // Rows are independent, so large imports are split and detected in parallel. The
+        // stream is ordered, so the changes keep the order of the Excel rows.
+        var rows = excelData.size() >= PARALLEL_THRESHOLD ? excelData.parallelStream() : excelData.stream();
+        List<PersonChange> rowChanges = rows.map(data -> detectChange(data, personIndex)).toList();
 
         List<PersonChange> changes = new ArrayList<>();
         Set<Long> matchedPersonIds = new HashSet<>();
 
-        for (ExcelPersonData data : excelData) {
-            PersonRecord existingRecord = findMatchingRecord(data, allPersons);
-
-            if (existingRecord == null) {
-                // No match found - this is a new person
-                changes.add(createNewPersonChange(data));
+        for (PersonChange change : rowChanges) {
+            // Track that this person was found in Excel
+            if (change.getExistingRecord() != null) {
+                matchedPersonIds.add(change.getExistingRecord().getId());
             }
-            else {
-                // Track that this person was found in Excel
-                matchedPersonIds.add(existingRecord.getId());
-
-                // Match found - check if there are any changes
-                PersonChange change = createUpdateChange(existingRecord, data);
-                if (change.getType() == PersonChange.ChangeType.UPDATE) {
-                    changes.add(change);
-                }
-                // Skip NO_CHANGE
+            // Skip NO_CHANGE
+            if (change.getType() != PersonChange.ChangeType.NO_CHANGE) {
+                changes.add(change);
             }
         }
 
@@ -62,25 +64,27 @@ public class PersonChangeDetector {
     }
 
     /**
-     * Find matching record using member_id first, then firstName + lastName.
+     * Detect changes in a background thread, so the UI stays responsive for large
+     * imports.
+     * @param excelData List of persons parsed from Excel
+     * @return the detected changes like {@link #detectChanges(List)}
      */
-    private PersonRecord findMatchingRecord(ExcelPersonData data, List<PersonRecord> allPersons) {
-        // First try to match by member_id if available
-        if (data.memberId() != null) {
-            Optional<PersonRecord> byMemberId = allPersons.stream()
-                .filter(p -> Objects.equals(p.getMemberId(), data.memberId()))
-                .findFirst();
-            if (byMemberId.isPresent()) {
-                return byMemberId.get();
-            }
-        }
+    @Async
+    public CompletableFuture<List<PersonChange>> detectChangesAsync(List<ExcelPersonData> excelData) {
+        return CompletableFuture.completedFuture(detectChanges(excelData));
+    }
 
-        // Fall back to matching by firstName + lastName
-        return allPersons.stream()
-            .filter(p -> Objects.equals(p.getFirstName(), data.firstName())
-                    && Objects.equals(p.getLastName(), data.lastName()))
-            .findFirst()
-            .orElse(null);
+    private PersonChange detectChange(ExcelPersonData data, PersonIndex personIndex) {
+        PersonRecord existingRecord = personIndex.findMatchingRecord(data);
+
+        if (existingRecord == null) {
+            // No match found - this is a new person
+            return createNewPersonChange(data);
+        }
+        else {
+            // Match found - check if there are any changes
+            return createUpdateChange(existingRecord, data);
+        }
     }
 
     private PersonChange createNewPersonChange(ExcelPersonData data) {
@@ -98,6 +102,14 @@ public class PersonChangeDetector {
     }
 
     private PersonChange createUpdateChange(PersonRecord existingRecord, ExcelPersonData data) {
+        // Most rows of an import are unchanged, they share an empty map
+        if (Objects.equals(existingRecord.getFirstName(), data.firstName())
+                && Objects.equals(existingRecord.getLastName(), data.lastName())
+                && Objects.equals(existingRecord.getEmail(), data.email())
+                && Objects.equals(existingRecord.getMemberId(), data.memberId())) {
+            return new PersonChange(PersonChange.ChangeType.NO_CHANGE, existingRecord, data, Map.of());
+        }
+
         Map<String, PersonChange.FieldChange> changedFields = new HashMap<>();
 
         // Compare firstName
@@ -124,10 +136,7 @@ public class PersonChangeDetector {
             changedFields.put("memberId", new PersonChange.FieldChange(oldValue, newValue));
         }
 
-        PersonChange.ChangeType type = changedFields.isEmpty() ? PersonChange.ChangeType.NO_CHANGE
-                : PersonChange.ChangeType.UPDATE;
-
-        return new PersonChange(type, existingRecord, data, changedFields);
+        return new PersonChange(PersonChange.ChangeType.UPDATE, existingRecord, data, changedFields);
     }
 
     private PersonChange createDeactivateChange(PersonRecord existingRecord) {
@@ -137,4 +146,47 @@ public class PersonChangeDetector {
         return new PersonChange(PersonChange.ChangeType.DEACTIVATE, existingRecord, null, changedFields);
     }
 
+    /**
+     * Indexes the persons by member_id and by firstName + lastName, so a row is matched
+     * with two lookups instead of scanning all persons. If several persons have the same
+     * key the first one in the list is used, like a linear scan would.
+     */
+    private static final class PersonIndex {
+
+        private final Map<Integer, PersonRecord> byMemberId;
+
+        private final Map<NameKey, PersonRecord> byName;
+
+        PersonIndex(List<PersonRecord> persons) {
+            byMemberId = HashMap.newHashMap(persons.size());
+            byName = HashMap.newHashMap(persons.size());
+            for (PersonRecord person : persons) {
+                if (person.getMemberId() != null) {
+                    byMemberId.putIfAbsent(person.getMemberId(), person);
+                }
+                byName.putIfAbsent(new NameKey(person.getFirstName(), person.getLastName()), person);
+            }
+        }
+
+        /**
+         * Find matching record using member_id first, then firstName + lastName.
+         */
+        PersonRecord findMatchingRecord(ExcelPersonData data) {
+            // First try to match by member_id if available
+            if (data.memberId() != null) {
+                PersonRecord byMemberIdRecord = byMemberId.get(data.memberId());
+                if (byMemberIdRecord != null) {
+                    return byMemberIdRecord;
+                }
+            }
+
+            // Fall back to matching by firstName + lastName
+            return byName.get(new NameKey(data.firstName(), data.lastName()));
+        }
+
+    }
+
+    private record NameKey(String firstName, String lastName) {
+    }
+
 }
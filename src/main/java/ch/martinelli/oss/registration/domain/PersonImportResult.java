@@ -0,0 +1,12 @@
+package ch.martinelli.oss.registration.domain;
+
+/**
+ * The number of persons changed by an import.
+ */
+public record PersonImportResult(int created, int updated, int deactivated) {
+
+    public int total() {
+        return created + updated + deactivated;
+    }
+
+}
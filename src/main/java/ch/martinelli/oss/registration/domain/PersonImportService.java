@@ -0,0 +1,75 @@
+package ch.martinelli.oss.registration.domain;
+
+import ch.martinelli.oss.registration.db.tables.records.PersonRecord;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+
+import static ch.martinelli.oss.registration.db.tables.Person.PERSON;
+
+/**
+ * Applies the accepted changes of a person import.
+ */
+@Service
+public class PersonImportService {
+
+    private final PersonRepository personRepository;
+
+    public PersonImportService(PersonRepository personRepository) {
+        this.personRepository = personRepository;
+    }
+
+    /**
+     * Applies all accepted changes in one transaction, so a failing import leaves the
+     * persons unchanged. The changes are grouped by type and written in batches instead
+     * of a statement per person.
+     */
+    @Transactional
+    public PersonImportResult applyChanges(Collection<PersonChange> changes) {
+        var newPersons = new ArrayList<PersonRecord>();
+        var updatedPersons = new ArrayList<PersonRecord>();
+        var deactivatedPersonIds = new ArrayList<Long>();
+
+        for (PersonChange change : changes) {
+            if (!change.isAccepted()) {
+                continue;
+            }
+
+            switch (change.getType()) {
+                case NEW -> {
+                    // Create new person
+                    var newRecord = PERSON.newRecord();
+                    newRecord.setFirstName(change.getNewData().firstName());
+                    newRecord.setLastName(change.getNewData().lastName());
+                    newRecord.setEmail(change.getNewData().email());
+                    newRecord.setMemberId(change.getNewData().memberId());
+                    newRecord.setActive(true);
+                    newPersons.add(newRecord);
+                }
+                case UPDATE -> {
+                    // Update existing person
+                    var personRecord = change.getExistingRecord();
+                    personRecord.setFirstName(change.getNewData().firstName());
+                    personRecord.setLastName(change.getNewData().lastName());
+                    personRecord.setEmail(change.getNewData().email());
+                    personRecord.setMemberId(change.getNewData().memberId());
+                    updatedPersons.add(personRecord);
+                }
+                // Deactivate person not in Excel
+                case DEACTIVATE -> deactivatedPersonIds.add(change.getExistingRecord().getId());
+                case NO_CHANGE -> {
+                    // Nothing to apply
+                }
+            }
+        }
+
+        var created = personRepository.insertAll(newPersons);
+        var updated = updatedPersons.isEmpty() ? 0 : Arrays.stream(personRepository.saveAll(updatedPersons)).sum();
+        var deactivated = personRepository.deactivate(deactivatedPersonIds);
+        return new PersonImportResult(created, updated, deactivated);
+    }
+
+}
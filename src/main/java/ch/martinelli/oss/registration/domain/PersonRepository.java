@@ -5,15 +5,22 @@ import ch.martinelli.oss.registration.db.tables.Person;
 import ch.martinelli.oss.registration.db.tables.records.PersonRecord;
 import org.jooq.DSLContext;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
 
+import static ch.martinelli.oss.registration.db.tables.Person.PERSON;
 import static ch.martinelli.oss.registration.db.tables.RegistrationPerson.REGISTRATION_PERSON;
+import static org.jooq.impl.DSL.any;
 
 // @formatter:off
 @Repository
 public class PersonRepository extends JooqDAO<Person, PersonRecord, Long> {
 
+    // Rows per insert statement, stays well below the limit of bind values per statement
+    private static final int INSERT_CHUNK_SIZE = 1000;
+
     public PersonRepository(DSLContext dslContext) {
         super(dslContext, Person.PERSON);
     }
@@ -26,4 +33,39 @@ public class PersonRepository extends JooqDAO<Person, PersonRecord, Long> {
                 .fetchInto(PersonRecord.class);
     }
 
+    /**
+     * Inserts the persons with multi-row inserts. The ids of the records are not set.
+     *
+     * @return the number of inserted rows
+     */
+    @Transactional
+    public int insertAll(List<PersonRecord> persons) {
+        var inserted = 0;
+        for (var from = 0; from < persons.size(); from += INSERT_CHUNK_SIZE) {
+            var insert = dslContext
+                    .insertInto(PERSON, PERSON.FIRST_NAME, PERSON.LAST_NAME, PERSON.EMAIL, PERSON.MEMBER_ID, PERSON.ACTIVE);
+            for (var person : persons.subList(from, Math.min(from + INSERT_CHUNK_SIZE, persons.size()))) {
+                insert = insert.values(person.getFirstName(), person.getLastName(), person.getEmail(),
+                        person.getMemberId(), person.getActive());
+            }
+            inserted += insert.execute();
+        }
+        return inserted;
+    }
+
+    /**
+     * @return the number of deactivated persons
+     */
+    @Transactional
+    public int deactivate(Collection<Long> personIds) {
+        if (personIds.isEmpty()) {
+            return 0;
+        }
+        return dslContext
+                .update(PERSON)
+                .set(PERSON.ACTIVE, false)
+                .where(PERSON.ID.eq(any(personIds.toArray(Long[]::new))))
+                .execute();
+    }
+
 }
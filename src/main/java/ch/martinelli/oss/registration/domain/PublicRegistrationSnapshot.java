@@ -0,0 +1,39 @@
+package ch.martinelli.oss.registration.domain;
+
+import ch.martinelli.oss.registration.db.tables.records.EventRecord;
+import ch.martinelli.oss.registration.db.tables.records.PersonRecord;
+import ch.martinelli.oss.registration.db.tables.records.RegistrationRecord;
+
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Everything the public registration form of a registration email shows, loaded at once.
+ * The registered flag of an event and a person is stored in a bit set at index
+ * {@code event * persons + person}.
+ *
+ * @param registrationEmailId the id of the registration email
+ * @param registration the registration of the email
+ * @param persons the persons of the email ordered by last and first name
+ * @param events the events of the registration ordered by date and title
+ * @param registered the registered cells
+ */
+public record PublicRegistrationSnapshot(Long registrationEmailId, RegistrationRecord registration,
+        List<PersonRecord> persons, List<EventRecord> events, BitSet registered) {
+
+    public PublicRegistrationSnapshot {
+        persons = List.copyOf(persons);
+        events = List.copyOf(events);
+        registered = (BitSet) registered.clone();
+    }
+
+    public boolean isRegistered(int event, int person) {
+        return registered.get(event * persons.size() + person);
+    }
+
+    @Override
+    public BitSet registered() {
+        return (BitSet) registered.clone();
+    }
+
+}
@@ -0,0 +1,81 @@
+package ch.martinelli.oss.registration.domain;
+
+import ch.martinelli.oss.registration.db.tables.records.EventRecord;
+import ch.martinelli.oss.registration.db.tables.records.RegistrationRecord;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Keeps the registrations and their events read by the public registration form and the
+ * confirmation emails. The entries are evicted when a registration or an event is saved,
+ * and in any case after {@code expire-after-write}. The records are shared and must not
+ * be changed.
+ * <p>
+ * Hits, misses and evictions are published as {@code cache.*} metrics with the cache
+ * names {@code registrations} and {@code registration-events}.
+ */
+@Component
+public class RegistrationCache {
+
+    private final LoadingCache<Long, RegistrationRecord> registrations;
+
+    private final LoadingCache<Long, List<EventRecord>> events;
+
+    public RegistrationCache(RegistrationRepository registrationRepository, MeterRegistry meterRegistry,
+            @Value("${registration.cache.maximum-size:1000}") long maximumSize,
+            @Value("${registration.cache.expire-after-write:10m}") Duration expireAfterWrite) {
+        // A missing registration is not cached, the loader returns null
+        registrations = Caffeine.newBuilder()
+            .maximumSize(maximumSize)
+            .expireAfterWrite(expireAfterWrite)
+            .recordStats()
+            .build(registrationId -> registrationRepository.findById(registrationId).orElse(null));
+        events = Caffeine.newBuilder()
+            .maximumSize(maximumSize)
+            .expireAfterWrite(expireAfterWrite)
+            .recordStats()
+            .build(registrationId -> List.copyOf(registrationRepository.findAllEventsByRegistrationId(registrationId)));
+
+        CaffeineCacheMetrics.monitor(meterRegistry, registrations, "registrations");
+        CaffeineCacheMetrics.monitor(meterRegistry, events, "registration-events");
+    }
+
+    public Optional<RegistrationRecord> findRegistration(Long registrationId) {
+        return Optional.ofNullable(registrations.get(registrationId));
+    }
+
+    /**
+     * @return the events of the registration ordered by date and title
+     */
+    public List<EventRecord> findEvents(Long registrationId) {
+        return events.get(registrationId);
+    }
+
+    /**
+     * Evicts the registration and its events. Within a transaction they are evicted again
+     * after the commit, so a concurrent read cannot cache the old state.
+     */
+    public void evict(Long registrationId) {
+        AfterCommit.runNowAndAfterCommit(() -> {
+            registrations.invalidate(registrationId);
+            events.invalidate(registrationId);
+        });
+    }
+
+    /**
+     * Evicts the events of all registrations, as an event can belong to several
+     * registrations.
+     */
+    public void evictEvents() {
+        AfterCommit.runNowAndAfterCommit(events::invalidateAll);
+    }
+
+}
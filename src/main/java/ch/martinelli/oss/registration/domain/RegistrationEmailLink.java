@@ -0,0 +1,10 @@
+package ch.martinelli.oss.registration.domain;
+
+/**
+ * The registration email a public link resolves to.
+ *
+ * @param registrationEmailId the id of the registration email
+ * @param registrationId the id of the registration of the email
+ */
+public record RegistrationEmailLink(Long registrationEmailId, Long registrationId) {
+}
@@ -3,20 +3,34 @@ package ch.martinelli.oss.registration.domain;
 import ch.martinelli.oss.jooqspring.JooqDAO;
 import ch.martinelli.oss.registration.db.tables.RegistrationEmail;
 import ch.martinelli.oss.registration.db.tables.records.PersonRecord;
-import ch.martinelli.oss.registration.db.tables.records.RegistrationEmailPersonRecord;
 import ch.martinelli.oss.registration.db.tables.records.RegistrationEmailRecord;
 import ch.martinelli.oss.registration.db.tables.records.RegistrationEmailViewRecord;
 import org.jooq.Condition;
 import org.jooq.DSLContext;
 import org.jooq.OrderField;
+import org.jooq.Records;
+import org.jooq.impl.DSL;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
+import static ch.martinelli.oss.registration.db.enums.MailOutboxStatus.FAILED;
+import static ch.martinelli.oss.registration.db.enums.MailOutboxStatus.PENDING;
+import static ch.martinelli.oss.registration.db.enums.MailOutboxStatus.SENDING;
+import static ch.martinelli.oss.registration.db.tables.Person.PERSON;
 import static ch.martinelli.oss.registration.db.tables.RegistrationEmail.REGISTRATION_EMAIL;
 import static ch.martinelli.oss.registration.db.tables.RegistrationEmailPerson.REGISTRATION_EMAIL_PERSON;
 import static ch.martinelli.oss.registration.db.tables.RegistrationEmailView.REGISTRATION_EMAIL_VIEW;
+import static ch.martinelli.oss.registration.db.tables.RegistrationPerson.REGISTRATION_PERSON;
+import static org.jooq.impl.DSL.countDistinct;
+import static org.jooq.impl.DSL.replace;
+import static org.jooq.impl.DSL.select;
+import static org.jooq.impl.DSL.selectDistinct;
+import static org.jooq.impl.DSL.uuid;
+import static org.jooq.impl.DSL.val;
 
 // @formatter:off
 @Repository
@@ -37,6 +51,21 @@ public class RegistrationEmailRepository extends JooqDAO<RegistrationEmail, Regi
                 .fetch();
     }
 
+    /**
+     * Passes the matching rows of the view ordered by email to the consumer while they are
+     * read from a cursor.
+     */
+    public void forEachFromView(Condition filter, Consumer<RegistrationEmailViewRecord> consumer) {
+        try (var cursor = dslContext
+                .selectFrom(REGISTRATION_EMAIL_VIEW)
+                .where(filter)
+                .orderBy(REGISTRATION_EMAIL_VIEW.EMAIL)
+                .fetchSize(500)
+                .fetchLazy()) {
+            cursor.forEach(consumer);
+        }
+    }
+
     public Optional<RegistrationEmailViewRecord> findByIdFromView(Long registrationEmailId) {
         return dslContext
                 .selectFrom(REGISTRATION_EMAIL_VIEW)
@@ -44,19 +73,43 @@ public class RegistrationEmailRepository extends JooqDAO<RegistrationEmail, Regi
                 .fetchOptional();
     }
 
-    public List<RegistrationEmailViewRecord> findByRegistrationIdAndSentAtIsNull(Long registrationId) {
+    /**
+     * Counts the invitations of the registration by their state. The state of an unsent
+     * invitation is taken from its latest mail outbox message.
+     */
+    public MailingProgress getMailingProgress(Long registrationId) {
+        var unsent = REGISTRATION_EMAIL_VIEW.SENT_AT.isNull();
         return dslContext
-                .selectFrom(REGISTRATION_EMAIL_VIEW)
+                .select(DSL.count(),
+                        DSL.count().filterWhere(REGISTRATION_EMAIL_VIEW.SENT_AT.isNotNull()),
+                        DSL.count().filterWhere(unsent.and(REGISTRATION_EMAIL_VIEW.MAIL_STATUS.in(PENDING, SENDING))),
+                        DSL.count().filterWhere(unsent.and(REGISTRATION_EMAIL_VIEW.MAIL_STATUS.eq(FAILED))))
+                .from(REGISTRATION_EMAIL_VIEW)
                 .where(REGISTRATION_EMAIL_VIEW.REGISTRATION_ID.eq(registrationId))
-                .and(REGISTRATION_EMAIL_VIEW.SENT_AT.isNull())
-                .fetch();
+                .fetchSingle(Records.mapping(MailingProgress::new));
     }
 
-    public Optional<RegistrationEmailRecord> findByLink(String link) {
+    public Optional<RegistrationEmailLink> findRegistrationEmailLink(String link) {
         return dslContext
-                .selectFrom(REGISTRATION_EMAIL)
+                .select(REGISTRATION_EMAIL.ID, REGISTRATION_EMAIL.REGISTRATION_ID)
+                .from(REGISTRATION_EMAIL)
                 .where(REGISTRATION_EMAIL.LINK.eq(link))
-                .fetchOptional();
+                .fetchOptional(Records.mapping(RegistrationEmailLink::new));
+    }
+
+    /**
+     * Passes the links of all registration emails to the consumer while they are read from
+     * a cursor. The cursor needs a transaction, otherwise the driver buffers all links.
+     */
+    @Transactional(readOnly = true)
+    public void forEachLink(Consumer<String> consumer) {
+        try (var cursor = dslContext
+                .select(REGISTRATION_EMAIL.LINK)
+                .from(REGISTRATION_EMAIL)
+                .fetchSize(1000)
+                .fetchLazy()) {
+            cursor.forEach(r -> consumer.accept(r.value1()));
+        }
     }
 
     public List<PersonRecord> findPersonsByRegistrationEmailId(Long registrationEmailId) {
@@ -67,21 +120,56 @@ public class RegistrationEmailRepository extends JooqDAO<RegistrationEmail, Regi
                 .fetchInto(PersonRecord.class);
     }
 
-    public Optional<RegistrationEmailRecord> findByRegistrationIdAndEmail(Long id, String email) {
+    /**
+     * Creates a registration email for every distinct email address of the persons of
+     * the registration that does not have one yet. Existing rows are left untouched
+     * thanks to the unique index on registration_id and email.
+     * @return the number of created registration emails
+     */
+    public int createMissingRegistrationEmails(Long registrationId) {
+        var emails = selectDistinct(REGISTRATION_PERSON.person().EMAIL)
+                .from(REGISTRATION_PERSON)
+                .where(REGISTRATION_PERSON.REGISTRATION_ID.eq(registrationId))
+                .asTable("emails");
+        var email = emails.field(PERSON.EMAIL);
+
         return dslContext
-                .selectFrom(REGISTRATION_EMAIL)
-                .where(REGISTRATION_EMAIL.REGISTRATION_ID.eq(id))
-                .and(REGISTRATION_EMAIL.EMAIL.eq(email))
-                .fetchOptional();
+                .insertInto(REGISTRATION_EMAIL,
+                        REGISTRATION_EMAIL.REGISTRATION_ID, REGISTRATION_EMAIL.EMAIL, REGISTRATION_EMAIL.LINK)
+                .select(select(val(registrationId), email, replace(uuid().cast(String.class), "-", ""))
+                        .from(emails))
+                .onConflict(REGISTRATION_EMAIL.REGISTRATION_ID, REGISTRATION_EMAIL.EMAIL)
+                .doNothing()
+                .execute();
     }
 
-    public Optional<RegistrationEmailPersonRecord> findByRegistrationEmailIdAndPersonId(Long registrationEmailId,
-            Long personId) {
+    /**
+     * Links every person of the registration to the registration email of its email
+     * address if the link does not exist yet.
+     * @return the number of created links
+     */
+    public int createMissingRegistrationEmailPersons(Long registrationId) {
         return dslContext
-                .selectFrom(REGISTRATION_EMAIL_PERSON)
-                .where(REGISTRATION_EMAIL_PERSON.REGISTRATION_EMAIL_ID.eq(registrationEmailId))
-                .and(REGISTRATION_EMAIL_PERSON.PERSON_ID.eq(personId))
-                .fetchOptional();
+                .insertInto(REGISTRATION_EMAIL_PERSON,
+                        REGISTRATION_EMAIL_PERSON.REGISTRATION_EMAIL_ID, REGISTRATION_EMAIL_PERSON.PERSON_ID)
+                .select(select(REGISTRATION_EMAIL.ID, REGISTRATION_PERSON.PERSON_ID)
+                        .from(REGISTRATION_PERSON)
+                        .join(PERSON).on(PERSON.ID.eq(REGISTRATION_PERSON.PERSON_ID))
+                        .join(REGISTRATION_EMAIL)
+                            .on(REGISTRATION_EMAIL.REGISTRATION_ID.eq(REGISTRATION_PERSON.REGISTRATION_ID))
+                            .and(REGISTRATION_EMAIL.EMAIL.eq(PERSON.EMAIL))
+                        .where(REGISTRATION_PERSON.REGISTRATION_ID.eq(registrationId)))
+                .onConflictDoNothing()
+                .execute();
+    }
+
+    public int countDistinctPersonEmails(Long registrationId) {
+        return dslContext
+                .select(countDistinct(PERSON.EMAIL))
+                .from(REGISTRATION_PERSON)
+                .join(PERSON).on(PERSON.ID.eq(REGISTRATION_PERSON.PERSON_ID))
+                .where(REGISTRATION_PERSON.REGISTRATION_ID.eq(registrationId))
+                .fetchOne(0, int.class);
     }
 
 }
@@ -0,0 +1,21 @@
+package ch.martinelli.oss.registration.domain;
+
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * The registration state of all persons of a registration email for all events of the
+ * registration. The cell of an event and a person is stored in a bit set at index
+ * {@code event * persons + person}.
+ *
+ * @param events the titles of the events ordered by date and title
+ * @param persons the names of the persons ordered by last and first name
+ * @param registered the registered cells
+ */
+public record RegistrationEmailState(List<String> events, List<String> persons, BitSet registered) {
+
+    public boolean isRegistered(int event, int person) {
+        return registered.get(event * persons.size() + person);
+    }
+
+}
@@ -0,0 +1,82 @@
+package ch.martinelli.oss.registration.domain;
+
+import org.jooq.Field;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import static ch.martinelli.oss.registration.db.tables.RegistrationEmailView.REGISTRATION_EMAIL_VIEW;
+
+/**
+ * Exports registrations as CSV, TSV or JSON Lines for processing by scripts. The rows are
+ * streamed from a database cursor directly to the output stream. The exports run in a
+ * read-only transaction, as the PostgreSQL driver buffers the whole result in auto-commit
+ * mode.
+ */
+@Service
+public class RegistrationExportService {
+
+    private static final List<Field<?>> REGISTRATION_EMAIL_FIELDS = List.of(REGISTRATION_EMAIL_VIEW.EMAIL,
+            REGISTRATION_EMAIL_VIEW.SENT_AT, REGISTRATION_EMAIL_VIEW.REGISTERED_AT, REGISTRATION_EMAIL_VIEW.MAIL_STATUS,
+            REGISTRATION_EMAIL_VIEW.MAIL_ATTEMPTS, REGISTRATION_EMAIL_VIEW.MAIL_LAST_ERROR);
+
+    private final EventRegistrationRepository eventRegistrationRepository;
+
+    private final RegistrationEmailRepository registrationEmailRepository;
+
+    public RegistrationExportService(EventRegistrationRepository eventRegistrationRepository,
+            RegistrationEmailRepository registrationEmailRepository) {
+        this.eventRegistrationRepository = eventRegistrationRepository;
+        this.registrationEmailRepository = registrationEmailRepository;
+    }
+
+    /**
+     * Writes the event registration matrix with a column per event that is true if the
+     * person is registered. Events with the same title get the id appended to the column
+     * name.
+     */
+    @Transactional(readOnly = true)
+    public void writeEventRegistrations(Long registrationId, ExportFormat format, OutputStream outputStream)
+            throws IOException {
+        var events = eventRegistrationRepository.findMatrixEvents(registrationId);
+
+        var columns = new ArrayList<>(List.of("last_name", "first_name"));
+        var titles = new HashSet<String>();
+        for (var event : events) {
+            columns.add(titles.add(event.getTitle()) ? event.getTitle()
+                    : "%s (%d)".formatted(event.getTitle(), event.getId()));
+        }
+
+        var exportWriter = new ExportWriter(format, columns, outputStream);
+        eventRegistrationRepository.forEachEventRegistrationRow(registrationId, events, eventRegistrationRow -> {
+            var values = new ArrayList<>(columns.size());
+            values.add(eventRegistrationRow.lastName());
+            values.add(eventRegistrationRow.firstName());
+            for (var i = 0; i < events.size(); i++) {
+                values.add(eventRegistrationRow.isRegistered(i));
+            }
+            exportWriter.writeRow(values);
+        });
+        exportWriter.flush();
+    }
+
+    /**
+     * Writes the registration emails with their sending and registration state.
+     */
+    @Transactional(readOnly = true)
+    public void writeRegistrationEmails(Long registrationId, ExportFormat format, OutputStream outputStream)
+            throws IOException {
+        var exportWriter = new ExportWriter(format, REGISTRATION_EMAIL_FIELDS.stream().map(Field::getName).toList(),
+                outputStream);
+        registrationEmailRepository.forEachFromView(REGISTRATION_EMAIL_VIEW.REGISTRATION_ID.eq(registrationId),
+                registrationEmail -> exportWriter
+                    .writeRow(REGISTRATION_EMAIL_FIELDS.stream().map(registrationEmail::get).toList()));
+        exportWriter.flush();
+    }
+
+}
@@ -0,0 +1,147 @@
+package ch.martinelli.oss.registration.domain;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Resolves the public links of the registration emails.
+ * <p>
+ * Resolved links are cached. Unknown links are rejected by a Bloom filter of all links
+ * without a query. The few unknown links the filter lets through are queried once and
+ * then cached as unknown for {@code unknown-expire-after-write}. The filter is built on
+ * first use and rebuilt when a mailing creates new links. Resolved links are evicted when
+ * their registration email is deleted, and in any case after {@code expire-after-write}.
+ * <p>
+ * The caches are published as {@code cache.*} metrics with the cache names
+ * {@code registration-links} and {@code registration-links-unknown}, the links rejected
+ * by the filter are counted as {@code registration.links.rejected}.
+ */
+@Component
+public class RegistrationLinkCache {
+
+    private static final double FALSE_POSITIVE_PROBABILITY = 0.01;
+
+    // Room for new links until the next rebuild
+    private static final int MIN_EXPECTED_LINKS = 1024;
+
+    private final RegistrationEmailRepository registrationEmailRepository;
+
+    private final Cache<String, RegistrationEmailLink> links;
+
+    private final Cache<String, Boolean> unknownLinks;
+
+    private final Counter rejected;
+
+    // A lock instead of synchronized, so waiting virtual threads do not pin their carrier
+    private final ReentrantLock rebuildLock = new ReentrantLock();
+
+    private volatile BloomFilter filter;
+
+    public RegistrationLinkCache(RegistrationEmailRepository registrationEmailRepository, MeterRegistry meterRegistry,
+            @Value("${registration.link-cache.maximum-size:10000}") long maximumSize,
+            @Value("${registration.link-cache.expire-after-write:1h}") Duration expireAfterWrite,
+            @Value("${registration.link-cache.unknown-expire-after-write:1m}") Duration unknownExpireAfterWrite) {
+        this.registrationEmailRepository = registrationEmailRepository;
+        links = Caffeine.newBuilder().maximumSize(maximumSize).expireAfterWrite(expireAfterWrite).recordStats().build();
+        unknownLinks = Caffeine.newBuilder()
+            .maximumSize(maximumSize)
+            .expireAfterWrite(unknownExpireAfterWrite)
+            .recordStats()
+            .build();
+        rejected = Counter.builder("registration.links.rejected")
+            .description("Unknown registration links rejected without a query")
+            .register(meterRegistry);
+
+        CaffeineCacheMetrics.monitor(meterRegistry, links, "registration-links");
+        CaffeineCacheMetrics.monitor(meterRegistry, unknownLinks, "registration-links-unknown");
+    }
+
+    /**
+     * @return the registration email of the link or empty if the link is unknown
+     */
+    public Optional<RegistrationEmailLink> resolve(String link) {
+        var registrationEmailLink = links.getIfPresent(link);
+        if (registrationEmailLink != null) {
+            return Optional.of(registrationEmailLink);
+        }
+        if (!getFilter().mightContain(link)) {
+            rejected.increment();
+            return Optional.empty();
+        }
+        if (unknownLinks.getIfPresent(link) != null) {
+            return Optional.empty();
+        }
+
+        var resolved = registrationEmailRepository.findRegistrationEmailLink(link);
+        resolved.ifPresentOrElse(value -> links.put(link, value), () -> unknownLinks.put(link, Boolean.TRUE));
+        return resolved;
+    }
+
+    /**
+     * Rebuilds the filter after new links were created. Within a transaction the filter
+     * is rebuilt after the commit.
+     */
+    public void linksCreated() {
+        AfterCommit.run(this::rebuildFilter);
+    }
+
+    /**
+     * Evicts the link of the registration email, see
+     * {@link AfterCommit#runNowAndAfterCommit(Runnable)}.
+     */
+    public void evictRegistrationEmail(Long registrationEmailId) {
+        AfterCommit.runNowAndAfterCommit(
+                () -> links.asMap().values().removeIf(link -> link.registrationEmailId().equals(registrationEmailId)));
+    }
+
+    /**
+     * Evicts the links of all registration emails of the registration, like
+     * {@link #evictRegistrationEmail(Long)}.
+     */
+    public void evictRegistration(Long registrationId) {
+        AfterCommit.runNowAndAfterCommit(
+                () -> links.asMap().values().removeIf(link -> link.registrationId().equals(registrationId)));
+    }
+
+    private BloomFilter getFilter() {
+        var current = filter;
+        if (current == null) {
+            rebuildLock.lock();
+            try {
+                current = filter;
+                if (current == null) {
+                    current = rebuildFilter();
+                }
+            }
+            finally {
+                rebuildLock.unlock();
+            }
+        }
+        return current;
+    }
+
+    private BloomFilter rebuildFilter() {
+        rebuildLock.lock();
+        try {
+            var expectedLinks = (int) Math.max(2 * registrationEmailRepository.count(), MIN_EXPECTED_LINKS);
+            var newFilter = BloomFilter.create(expectedLinks, FALSE_POSITIVE_PROBABILITY);
+            registrationEmailRepository.forEachLink(newFilter::put);
+            filter = newFilter;
+            unknownLinks.invalidateAll();
+            return newFilter;
+        }
+        finally {
+            rebuildLock.unlock();
+        }
+    }
+
+}
@@ -55,7 +55,7 @@ public class RegistrationRepository extends JooqDAO<Registration, RegistrationRe
                 .select(REGISTRATION_EVENT.event().fields())
                 .from(REGISTRATION_EVENT)
                 .where(REGISTRATION_EVENT.REGISTRATION_ID.eq(registrationId))
-                .orderBy(REGISTRATION_EVENT.event().FROM_DATE)
+                .orderBy(REGISTRATION_EVENT.event().FROM_DATE, REGISTRATION_EVENT.event().TITLE, REGISTRATION_EVENT.EVENT_ID)
                 .fetchInto(EventRecord.class);
     }
 
@@ -1,24 +1,19 @@
 package ch.martinelli.oss.registration.domain;
 
 import ch.martinelli.oss.registration.db.tables.records.*;
-import org.jooq.DSLContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Optional;
 import java.util.Set;
-import java.util.UUID;
 import java.util.stream.Collectors;
 
-import static ch.martinelli.oss.registration.db.tables.RegistrationEmail.REGISTRATION_EMAIL;
-import static ch.martinelli.oss.registration.db.tables.RegistrationEmailPerson.REGISTRATION_EMAIL_PERSON;
-
 @Service
 public class RegistrationService {
 
@@ -26,66 +21,95 @@ public class RegistrationService {
 
     private final RegistrationRepository registrationRepository;
 
-    private final DSLContext dslContext;
-
-    private final EmailSender emailSender;
-
     private final RegistrationEmailRepository registrationEmailRepository;
 
-    private final PersonRepository personRepository;
-
     private final EventRegistrationRepository eventRegistrationRepository;
 
-    private final EventRepository eventRepository;
+    private final MailOutboxRepository mailOutboxRepository;
+
+    private final MailOutboxWorker mailOutboxWorker;
+
+    private final RegistrationCache registrationCache;
 
-    private final String publicAddress;
+    private final RegistrationLinkCache registrationLinkCache;
 
-    public RegistrationService(RegistrationRepository registrationRepository, DSLContext dslContext,
-            EmailSender emailSender, RegistrationEmailRepository registrationEmailRepository,
-            PersonRepository personRepository, EventRegistrationRepository eventRegistrationRepository,
-            EventRepository eventRepository, @Value("${registration.public.address}") String publicAddress) {
+    public RegistrationService(RegistrationRepository registrationRepository,
+            RegistrationEmailRepository registrationEmailRepository,
+            EventRegistrationRepository eventRegistrationRepository, MailOutboxRepository mailOutboxRepository,
+            MailOutboxWorker mailOutboxWorker, RegistrationCache registrationCache,
+            RegistrationLinkCache registrationLinkCache) {
         this.registrationRepository = registrationRepository;
-        this.dslContext = dslContext;
-        this.emailSender = emailSender;
         this.registrationEmailRepository = registrationEmailRepository;
-        this.personRepository = personRepository;
         this.eventRegistrationRepository = eventRegistrationRepository;
-        this.eventRepository = eventRepository;
-        this.publicAddress = publicAddress;
+        this.mailOutboxRepository = mailOutboxRepository;
+        this.mailOutboxWorker = mailOutboxWorker;
+        this.registrationCache = registrationCache;
+        this.registrationLinkCache = registrationLinkCache;
     }
 
     @Transactional
     public void save(RegistrationRecord registration, Set<EventRecord> events, Set<PersonRecord> persons) {
         registrationRepository.saveWithEventsAndPersons(registration, events, persons);
+        registrationCache.evict(registration.getId());
     }
 
     @Transactional
-    public boolean createMailing(RegistrationRecord registration) {
-        var persons = personRepository.findByRegistrationId(registration.getId());
-        for (var person : persons) {
-            var optionalRegistrationEmail = registrationEmailRepository
-                .findByRegistrationIdAndEmail(registration.getId(), person.getEmail());
-            RegistrationEmailRecord registrationEmail;
-            if (optionalRegistrationEmail.isEmpty()) {
-                registrationEmail = dslContext.newRecord(REGISTRATION_EMAIL);
-                registrationEmail.setEmail(person.getEmail());
-                registrationEmail.setLink(UUID.randomUUID().toString().replace("-", ""));
-                registrationEmail.setRegistrationId(registration.getId());
-                registrationEmail.store();
-            }
-            else {
-                registrationEmail = optionalRegistrationEmail.get();
-            }
-            var optionalRegistrationEmailPerson = registrationEmailRepository
-                .findByRegistrationEmailIdAndPersonId(registrationEmail.getId(), person.getId());
-            if (optionalRegistrationEmailPerson.isEmpty()) {
-                var registrationEmailPerson = dslContext.newRecord(REGISTRATION_EMAIL_PERSON);
-                registrationEmailPerson.setRegistrationEmailId(registrationEmail.getId());
-                registrationEmailPerson.setPersonId(person.getId());
-                registrationEmailPerson.store();
+    public void delete(Long registrationId) {
+        registrationRepository.deleteById(registrationId);
+        registrationCache.evict(registrationId);
+        registrationLinkCache.evictRegistration(registrationId);
+    }
+
+    @Transactional
+    public void deleteRegistrationEmail(Long registrationEmailId) {
+        registrationEmailRepository.deleteById(registrationEmailId);
+        registrationLinkCache.evictRegistrationEmail(registrationEmailId);
+    }
+
+    /**
+     * Loads the public registration form of the registration email with the link. The
+     * link is resolved by the {@link RegistrationLinkCache} and the registration and its
+     * events are taken from the {@link RegistrationCache}, so only the registrations of
+     * the persons are queried.
+     */
+    public Optional<PublicRegistrationSnapshot> findPublicRegistrationSnapshot(String link) {
+        return registrationLinkCache.resolve(link)
+            .flatMap(registrationEmailLink -> registrationCache.findRegistration(registrationEmailLink.registrationId())
+                .map(registration -> createSnapshot(registrationEmailLink.registrationEmailId(), registration)));
+    }
+
+    private PublicRegistrationSnapshot createSnapshot(Long registrationEmailId, RegistrationRecord registration) {
+        var events = registrationCache.findEvents(registration.getId());
+        var eventIndexes = HashMap.<Long, Integer>newHashMap(events.size());
+        for (var event : events) {
+            eventIndexes.put(event.getId(), eventIndexes.size());
+        }
+
+        var registeredEventIds = eventRegistrationRepository.findRegisteredEventIdsByPerson(registrationEmailId,
+                registration.getId());
+        var persons = List.copyOf(registeredEventIds.keySet());
+        var registered = new BitSet(events.size() * persons.size());
+        for (var person = 0; person < persons.size(); person++) {
+            for (var eventId : registeredEventIds.get(persons.get(person))) {
+                var event = eventIndexes.get(eventId);
+                // Null if the person has no registrations or the event was removed
+                if (event != null) {
+                    registered.set(event * persons.size() + person);
+                }
             }
         }
-        return true;
+        return new PublicRegistrationSnapshot(registrationEmailId, registration, persons, events, registered);
+    }
+
+    @Transactional
+    public MailingResult createMailing(RegistrationRecord registration) {
+        var created = registrationEmailRepository.createMissingRegistrationEmails(registration.getId());
+        registrationEmailRepository.createMissingRegistrationEmailPersons(registration.getId());
+        if (created > 0) {
+            registrationLinkCache.linksCreated();
+        }
+        var reused = registrationEmailRepository.countDistinctPersonEmails(registration.getId()) - created;
+        return new MailingResult(created, reused);
     }
 
     @Transactional
@@ -94,16 +118,17 @@ public class RegistrationService {
             return false;
         }
 
-        // Fetch all existing registrations to compare
-        var existingRegistrations = eventRegistrations.stream()
-            .map(eventReg -> eventRegistrationRepository.findByRegistrationIdAndEventIdAndPersonId(
-                    eventReg.getRegistrationId(), eventReg.getEventId(), eventReg.getPersonId()))
-            .filter(Optional::isPresent)
-            .map(Optional::get)
-            .collect(Collectors.toSet());
-
-        // Check if there are any changes
-        if (!hasRegistrationChanged(existingRegistrations, eventRegistrations)) {
+        // Fetch all existing registrations of the persons at once and keep only the
+        // changed ones
+        var existingRegistrations = eventRegistrationRepository.findByRegistrationEmailId(registrationEmailId)
+            .stream()
+            .collect(Collectors.toMap(EventPersonKey::of, EventRegistrationRecord::getRegistered));
+        var changedRegistrations = eventRegistrations.stream()
+            .filter(eventRegistration -> !eventRegistration.getRegistered()
+                .equals(existingRegistrations.get(EventPersonKey.of(eventRegistration))))
+            .toList();
+
+        if (changedRegistrations.isEmpty()) {
             // No changes detected, skip save and email
             return false;
         }
@@ -118,152 +143,48 @@ public class RegistrationService {
             registrationEmail.store();
         }
 
-        for (var eventRegistration : eventRegistrations) {
-            var existingEventRegistration = eventRegistrationRepository.findByRegistrationIdAndEventIdAndPersonId(
-                    eventRegistration.getRegistrationId(), eventRegistration.getEventId(),
-                    eventRegistration.getPersonId());
-            if (existingEventRegistration.isPresent()) {
-                var eventRegistrationRecord = existingEventRegistration.get();
-                eventRegistrationRecord.setRegistered(eventRegistration.getRegistered());
-                eventRegistrationRecord.store();
-            }
-            else {
-                dslContext.attach(eventRegistration);
-                eventRegistration.store();
-            }
-        }
+        eventRegistrationRepository.upsert(changedRegistrations);
 
-        // Send confirmation email
-        sendConfirmationEmail(registrationEmailId, isFirstRegistration);
+        // The confirmation is queued with the registration and rendered when it is sent
+        mailOutboxRepository.enqueueConfirmation(registrationEmailId, isFirstRegistration);
+        mailOutboxWorker.wakeUp();
 
         return true;
     }
 
-    @Async
+    /**
+     * Queues the unsent registration emails in the mail outbox and wakes up the outbox
+     * workers. Sending happens in the background and survives restarts.
+     */
     public void sendMails(RegistrationRecord registration, String replayTo) {
-        var registrationEmails = registrationEmailRepository.findByRegistrationIdAndSentAtIsNull(registration.getId());
-        for (var registrationEmail : registrationEmails) {
-            try {
-                emailSender.sendEmail(registration, registrationEmail, replayTo);
-            }
-            catch (Exception e) {
-                log.error("Error sending email", e);
-            }
-        }
+        var queued = mailOutboxRepository.enqueueUnsent(registration.getId(), replayTo);
+        log.info("Queued {} emails of registration {}", queued, registration.getId());
+        mailOutboxWorker.wakeUp();
     }
 
-    private void sendConfirmationEmail(Long registrationEmailId, boolean isFirstRegistration) {
-        var registrationEmailViewOpt = registrationEmailRepository.findByIdFromView(registrationEmailId);
-        if (registrationEmailViewOpt.isEmpty()) {
-            log.warn("Could not find registration email with id {}", registrationEmailId);
-            return;
-        }
-
-        var registrationEmailView = registrationEmailViewOpt.get();
-        var registrationOpt = registrationRepository.findById(registrationEmailView.getRegistrationId());
-        if (registrationOpt.isEmpty()) {
-            log.warn("Could not find registration with id {}", registrationEmailView.getRegistrationId());
-            return;
-        }
-
-        var registration = registrationOpt.get();
-
-        // Choose template based on whether it's first registration or update
-        String subject;
-        String template;
-        if (isFirstRegistration) {
-            subject = registration.getConfirmationEmailSubjectNew();
-            template = registration.getConfirmationEmailTextNew();
-        }
-        else {
-            subject = registration.getConfirmationEmailSubjectUpdate();
-            template = registration.getConfirmationEmailTextUpdate();
-        }
-
-        // If no template is configured, skip sending
-        if (template == null || template.isBlank()) {
-            log.info("No confirmation email template configured for registration {}", registration.getId());
-            return;
-        }
-
-        // Build person names list
-        var persons = registrationEmailRepository.findPersonsByRegistrationEmailId(registrationEmailId);
-        var personNames = persons.stream()
-            .map(p -> p.getFirstName() + " " + p.getLastName())
-            .collect(Collectors.joining("\n- ", "- ", ""));
-
-        // Build events list with registration status
-        var events = eventRepository.findByRegistrationId(registration.getId());
-        var eventsText = new StringBuilder();
-        for (var event : events) {
-            eventsText.append("- ").append(event.getTitle()).append(":\n");
-            for (var person : persons) {
-                var eventRegOpt = eventRegistrationRepository
-                    .findByRegistrationIdAndEventIdAndPersonId(registration.getId(), event.getId(), person.getId());
-                boolean registered = eventRegOpt.map(EventRegistrationRecord::getRegistered).orElse(false);
-                eventsText.append("  ")
-                    .append(person.getFirstName())
-                    .append(" ")
-                    .append(person.getLastName())
-                    .append(": ")
-                    .append(registered ? "Ja" : "Nein")
-                    .append("\n");
-            }
-        }
-
-        // Format dates
-        var dateFormatter = DateTimeFormatter.ofPattern("dd.MM.yyyy");
-        var openFrom = registration.getOpenFrom().format(dateFormatter);
-        var openUntil = registration.getOpenUntil().format(dateFormatter);
-
-        // Build magic link
-        var magicLink = "%s/public/%s".formatted(publicAddress, registrationEmailView.getLink());
-
-        // Replace placeholders
-        var body = template.replace("%PERSON_NAMES%", personNames)
-            .replace("%EVENTS%", eventsText.toString().trim())
-            .replace("%LINK%", magicLink)
-            .replace("%OPEN_FROM%", openFrom)
-            .replace("%OPEN_UNTIL%", openUntil)
-            .replace("%REMARKS%", registration.getRemarks() != null ? registration.getRemarks() : "");
-
-        // Send email
-        emailSender.sendConfirmationEmail(registrationEmailView.getEmail(),
-                subject != null ? subject : "Anmeldebestätigung", body, registrationEmailView.getEmail() // replyTo
-                                                                                                         // same
-                                                                                                         // as
-                                                                                                         // recipient
-        );
+    public MailingProgress getMailingProgress(Long registrationId) {
+        return registrationEmailRepository.getMailingProgress(registrationId);
     }
 
-    private boolean hasRegistrationChanged(Set<EventRegistrationRecord> existing,
-            Set<EventRegistrationRecord> submitted) {
-        // If no existing registrations, this is the first time - consider it a change
-        if (existing.isEmpty()) {
-            return true;
+    /**
+     * Queues the invitation of a registration email again, e.g. after it failed
+     * permanently.
+     * @return true if the invitation was queued, false if it is already queued
+     */
+    public boolean requeueInvitation(Long registrationEmailId, String replyTo) {
+        var queued = mailOutboxRepository.enqueueInvitation(registrationEmailId, replyTo);
+        if (queued) {
+            mailOutboxWorker.wakeUp();
         }
+        return queued;
+    }
 
-        // Compare each submitted registration with existing
-        for (var submittedReg : submitted) {
-            var matchingExisting = existing.stream()
-                .filter(e -> e.getRegistrationId().equals(submittedReg.getRegistrationId())
-                        && e.getEventId().equals(submittedReg.getEventId())
-                        && e.getPersonId().equals(submittedReg.getPersonId()))
-                .findFirst();
-
-            if (matchingExisting.isEmpty()) {
-                // New registration (not in existing) - this is a change
-                return true;
-            }
+    private record EventPersonKey(Long eventId, Long personId) {
 
-            // Check if registered status changed
-            if (!matchingExisting.get().getRegistered().equals(submittedReg.getRegistered())) {
-                return true;
-            }
+        static EventPersonKey of(EventRegistrationRecord eventRegistration) {
+            return new EventPersonKey(eventRegistration.getEventId(), eventRegistration.getPersonId());
         }
 
-        // No changes detected
-        return false;
     }
 
 }
@@ -0,0 +1,193 @@
+package ch.martinelli.oss.registration.security;
+
+import ch.martinelli.oss.registration.domain.RegistrationLinkCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.vaadin.flow.i18n.I18NProvider;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sheds abusive requests of the public registration form at {@code /public/{link}} before
+ * Spring Security and Vaadin create a session.
+ * <p>
+ * Every client IP address and every link has a token bucket with a capacity of
+ * {@code per-ip-per-minute} and {@code per-link-per-minute} requests refilled over a
+ * minute, a value of 0 disables the bucket. Requests without a token get 429 with a
+ * Retry-After header. Unknown links are answered with 404 and a translated plain text
+ * message using the {@link RegistrationLinkCache}, so guessed links neither reach the
+ * database nor Vaadin. Shed requests are counted as {@code registration.public.shed} by
+ * reason.
+ */
+@Component
+@Order(SecurityProperties.DEFAULT_FILTER_ORDER - 1)
+public class PublicRateLimitFilter extends OncePerRequestFilter {
+
+    private static final String PUBLIC_PATH = "/public/";
+
+    // Buckets of clients and links that were not seen for a while are full again anyway
+    private static final Duration BUCKET_EXPIRY = Duration.ofMinutes(10);
+
+    private static final int MAX_BUCKETS = 100_000;
+
+    private final RegistrationLinkCache registrationLinkCache;
+
+    private final I18NProvider i18NProvider;
+
+    private final LoadingCache<String, Bucket> ipBuckets;
+
+    private final LoadingCache<String, Bucket> linkBuckets;
+
+    private final Counter shedByIp;
+
+    private final Counter shedByLink;
+
+    private final Counter shedUnknownLink;
+
+    public PublicRateLimitFilter(RegistrationLinkCache registrationLinkCache, I18NProvider i18NProvider,
+            MeterRegistry meterRegistry,
+            @Value("${registration.public.rate-limit.per-ip-per-minute:0}") long perIpPerMinute,
+            @Value("${registration.public.rate-limit.per-link-per-minute:0}") long perLinkPerMinute) {
+        this.registrationLinkCache = registrationLinkCache;
+        this.i18NProvider = i18NProvider;
+        ipBuckets = createBuckets(perIpPerMinute);
+        linkBuckets = createBuckets(perLinkPerMinute);
+        shedByIp = shedCounter(meterRegistry, "ip");
+        shedByLink = shedCounter(meterRegistry, "link");
+        shedUnknownLink = shedCounter(meterRegistry, "unknown-link");
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !getPath(request).startsWith(PUBLIC_PATH);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        var ipWait = ipBuckets.get(request.getRemoteAddr()).tryTake();
+        if (ipWait > 0) {
+            shedByIp.increment();
+            tooManyRequests(response, ipWait);
+            return;
+        }
+
+        var link = getLink(request);
+        if (!link.isEmpty()) {
+            if (registrationLinkCache.resolve(link).isEmpty()) {
+                shedUnknownLink.increment();
+                notFound(request, response);
+                return;
+            }
+            var linkWait = linkBuckets.get(link).tryTake();
+            if (linkWait > 0) {
+                shedByLink.increment();
+                tooManyRequests(response, linkWait);
+                return;
+            }
+        }
+
+        filterChain.doFilter(request, response);
+    }
+
+    private static String getPath(HttpServletRequest request) {
+        return request.getRequestURI().substring(request.getContextPath().length());
+    }
+
+    private static String getLink(HttpServletRequest request) {
+        var link = getPath(request).substring(PUBLIC_PATH.length());
+        var slash = link.indexOf('/');
+        return slash >= 0 ? link.substring(0, slash) : link;
+    }
+
+    /**
+     * Writes the not found message in the language of the client. There is no error
+     * dispatch, as the error page would be rendered by Vaadin.
+     */
+    private void notFound(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        var providedLocales = i18NProvider.getProvidedLocales();
+        var locale = providedLocales.stream()
+            .filter(provided -> provided.getLanguage().equals(request.getLocale().getLanguage()))
+            .findFirst()
+            .orElse(providedLocales.getFirst());
+
+        response.setStatus(HttpStatus.NOT_FOUND.value());
+        response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.getWriter().write(i18NProvider.getTranslation("public.link.not.found", locale));
+    }
+
+    private static void tooManyRequests(HttpServletResponse response, long waitNanos) {
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER,
+                String.valueOf(Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + 999_999_999))));
+    }
+
+    private static LoadingCache<String, Bucket> createBuckets(long perMinute) {
+        return Caffeine.newBuilder()
+            .maximumSize(MAX_BUCKETS)
+            .expireAfterAccess(BUCKET_EXPIRY)
+            .build(key -> new Bucket(perMinute, Duration.ofMinutes(1)));
+    }
+
+    private static Counter shedCounter(MeterRegistry meterRegistry, String reason) {
+        return Counter.builder("registration.public.shed")
+            .description("Requests of the public registration form that were shed")
+            .tag("reason", reason)
+            .register(meterRegistry);
+    }
+
+    private static final class Bucket {
+
+        private final long capacity;
+
+        private final double nanosPerToken;
+
+        private double tokens;
+
+        private long refilledAt;
+
+        Bucket(long capacity, Duration period) {
+            this.capacity = capacity;
+            this.nanosPerToken = capacity > 0 ? (double) period.toNanos() / capacity : 0;
+            this.tokens = capacity;
+            this.refilledAt = System.nanoTime();
+        }
+
+        /**
+         * @return 0 if a token was taken, otherwise the nanoseconds until the next token
+         */
+        synchronized long tryTake() {
+            if (capacity <= 0) {
+                return 0;
+            }
+            var now = System.nanoTime();
+            tokens = Math.min(capacity, tokens + (now - refilledAt) / nanosPerToken);
+            refilledAt = now;
+            if (tokens >= 1) {
+                tokens--;
+                return 0;
+            }
+            return Math.max(1, (long) Math.ceil((1 - tokens) * nanosPerToken));
+        }
+
+    }
+
+}
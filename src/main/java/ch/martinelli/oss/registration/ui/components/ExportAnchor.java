@@ -0,0 +1,41 @@
+package ch.martinelli.oss.registration.ui.components;
+
+import ch.martinelli.oss.registration.domain.ExportFormat;
+import com.vaadin.flow.component.button.Button;
+import com.vaadin.flow.component.button.ButtonVariant;
+import com.vaadin.flow.component.html.Anchor;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import static com.vaadin.flow.i18n.I18NProvider.translate;
+
+/**
+ * Downloads a file in one of the text export formats. The content is written directly to
+ * the response.
+ */
+public class ExportAnchor extends Anchor {
+
+    public ExportAnchor(String baseFileName, ExportFormat format, ExportContent exportContent) {
+        super(e -> {
+            e.setFileName(baseFileName + "." + format.fileExtension());
+            e.setContentType(format.contentType());
+            try (var outputStream = e.getOutputStream()) {
+                exportContent.write(format, outputStream);
+            }
+        }, "");
+        setTarget("_blank");
+
+        var button = new Button(translate(format.translationKey()), format.icon().create());
+        button.addThemeVariants(ButtonVariant.LUMO_TERTIARY);
+        add(button);
+    }
+
+    @FunctionalInterface
+    public interface ExportContent {
+
+        void write(ExportFormat format, OutputStream outputStream) throws IOException;
+
+    }
+
+}
@@ -55,6 +55,10 @@ public abstract class EditView<T extends Table<R>, R extends UpdatableRecord<R>,
 
     protected transient Consumer<R> afterNewRecord;
 
+    protected transient Consumer<R> afterSave;
+
+    protected transient Consumer<R> afterDelete;
+
     protected EditView(D repository, T table, Grid<R> grid, Binder<R> binder) {
         this.repository = repository;
         this.table = table;
@@ -121,6 +125,9 @@ public abstract class EditView<T extends Table<R>, R extends UpdatableRecord<R>,
                     translate("delete.record.question"), translate("yes"), ce -> {
                         try {
                             repository.delete(eventRecord);
+                            if (afterDelete != null) {
+                                afterDelete.accept(eventRecord);
+                            }
 
                             clearForm();
                             grid.getDataProvider().refreshAll();
@@ -199,6 +206,9 @@ public abstract class EditView<T extends Table<R>, R extends UpdatableRecord<R>,
 
                     binder.writeBean(this.currentRecord);
                     repository.save(this.currentRecord);
+                    if (afterSave != null) {
+                        afterSave.accept(this.currentRecord);
+                    }
 
                     if (isNew) {
                         grid.getDataProvider().refreshAll();
@@ -3,9 +3,11 @@ package ch.martinelli.oss.registration.ui.views.events;
 import ch.martinelli.oss.registration.db.tables.Event;
 import ch.martinelli.oss.registration.db.tables.records.EventRecord;
 import ch.martinelli.oss.registration.domain.EventRepository;
+import ch.martinelli.oss.registration.domain.RegistrationCache;
 import ch.martinelli.oss.registration.security.Roles;
 import ch.martinelli.oss.registration.ui.components.I18nDatePicker;
 import ch.martinelli.oss.registration.ui.views.EditView;
+import ch.martinelli.oss.vaadinjooq.util.VaadinJooqUtil;
 import com.vaadin.flow.component.button.Button;
 import com.vaadin.flow.component.button.ButtonVariant;
 import com.vaadin.flow.component.checkbox.Checkbox;
@@ -23,6 +25,8 @@ import com.vaadin.flow.router.BeforeEnterObserver;
 import com.vaadin.flow.router.HasDynamicTitle;
 import com.vaadin.flow.router.Route;
 import jakarta.annotation.security.RolesAllowed;
+import org.jooq.Condition;
+import org.jooq.impl.DSL;
 
 import java.time.LocalDate;
 
@@ -38,9 +42,13 @@ public class EventsView extends EditView<Event, EventRecord, EventRepository>
 
     private boolean hidePastEvents;
 
-    public EventsView(EventRepository eventRepository) {
+    public EventsView(EventRepository eventRepository, RegistrationCache registrationCache) {
         super(eventRepository, EVENT, new Grid<>(EventRecord.class, false), new Binder<>(EventRecord.class));
 
+        // Registrations show their events from the cache
+        afterSave = eventRecord -> registrationCache.evictEvents();
+        afterDelete = eventRecord -> registrationCache.evictEvents();
+
         this.hidePastEvents = true; // Initialize in constructor
     }
 
@@ -128,17 +136,16 @@ public class EventsView extends EditView<Event, EventRecord, EventRepository>
     @Override
     protected void setItems() {
         grid.setItems(query -> repository
-            .findAll(query.getOffset(), query.getLimit(),
-                    ch.martinelli.oss.vaadinjooq.util.VaadinJooqUtil.orderFields(EVENT, query))
-            .stream()
-            .filter(event -> {
-                if (!hidePastEvents) {
-                    return true; // Show all events
-                }
-                // Use toDate if present, otherwise use fromDate
-                var eventEndDate = event.getToDate() != null ? event.getToDate() : event.getFromDate();
-                return eventEndDate.isAfter(LocalDate.now()) || eventEndDate.isEqual(LocalDate.now());
-            }));
+            .findAll(getFilter(), query.getOffset(), query.getLimit(), VaadinJooqUtil.orderFields(EVENT, query))
+            .stream(), query -> repository.count(getFilter()));
+    }
+
+    private Condition getFilter() {
+        if (!hidePastEvents) {
+            return DSL.noCondition(); // Show all events
+        }
+        // Use toDate if present, otherwise use fromDate
+        return DSL.coalesce(EVENT.TO_DATE, EVENT.FROM_DATE).greaterOrEqual(LocalDate.now());
     }
 
     protected void createComponents(FormLayout formLayout) {
@@ -1,7 +1,7 @@
 package ch.martinelli.oss.registration.ui.views.persons;
 
 import ch.martinelli.oss.registration.domain.PersonChange;
-import ch.martinelli.oss.registration.domain.PersonRepository;
+import ch.martinelli.oss.registration.domain.PersonImportService;
 import ch.martinelli.oss.registration.ui.components.Notification;
 import com.vaadin.flow.component.button.Button;
 import com.vaadin.flow.component.button.ButtonVariant;
@@ -15,7 +15,6 @@ import com.vaadin.flow.component.orderedlayout.VerticalLayout;
 
 import java.util.List;
 
-import static ch.martinelli.oss.registration.db.tables.Person.PERSON;
 import static com.vaadin.flow.i18n.I18NProvider.translate;
 
 /**
@@ -25,15 +24,15 @@ public class PersonImportDialog extends Dialog {
 
     private final transient List<PersonChange> changes;
 
-    private final transient PersonRepository personRepository;
+    private final transient PersonImportService personImportService;
 
     final Grid<PersonChange> grid; // Package-private for testing
 
     private final transient Runnable onSuccess;
 
-    public PersonImportDialog(List<PersonChange> changes, PersonRepository personRepository, Runnable onSuccess) {
+    public PersonImportDialog(List<PersonChange> changes, PersonImportService personImportService, Runnable onSuccess) {
         this.changes = changes;
-        this.personRepository = personRepository;
+        this.personImportService = personImportService;
         this.onSuccess = onSuccess;
 
         setHeaderTitle(translate("upload.persons.dialog.title"));
@@ -173,45 +172,11 @@ public class PersonImportDialog extends Dialog {
     }
 
     private void applyChanges() {
-        var appliedCount = 0;
-
-        for (PersonChange change : changes) {
-            if (!change.isAccepted()) {
-                continue;
-            }
-
-            if (change.getType() == PersonChange.ChangeType.NEW) {
-                // Create new person
-                var newRecord = PERSON.newRecord();
-                newRecord.setFirstName(change.getNewData().firstName());
-                newRecord.setLastName(change.getNewData().lastName());
-                newRecord.setEmail(change.getNewData().email());
-                newRecord.setMemberId(change.getNewData().memberId());
-                newRecord.setActive(true);
-                personRepository.save(newRecord);
-                appliedCount++;
-            }
-            else if (change.getType() == PersonChange.ChangeType.UPDATE) {
-                // Update existing person
-                var personRecord = change.getExistingRecord();
-                personRecord.setFirstName(change.getNewData().firstName());
-                personRecord.setLastName(change.getNewData().lastName());
-                personRecord.setEmail(change.getNewData().email());
-                personRecord.setMemberId(change.getNewData().memberId());
-                personRepository.save(personRecord);
-                appliedCount++;
-            }
-            else if (change.getType() == PersonChange.ChangeType.DEACTIVATE) {
-                // Deactivate person not in Excel
-                var personRecord = change.getExistingRecord();
-                personRecord.setActive(false);
-                personRepository.save(personRecord);
-                appliedCount++;
-            }
-        }
+        var result = personImportService.applyChanges(changes);
 
         close();
-        Notification.success(translate("upload.persons.success", appliedCount));
+        Notification
+            .success(translate("upload.persons.success", result.created(), result.updated(), result.deactivated()));
         if (onSuccess != null) {
             onSuccess.run();
         }
@@ -1,19 +1,26 @@
 package ch.martinelli.oss.registration.ui.views.persons;
 
+import ch.martinelli.oss.registration.domain.ExcelPersonData;
 import ch.martinelli.oss.registration.domain.ExcelPersonParser;
+import ch.martinelli.oss.registration.domain.PersonChange;
 import ch.martinelli.oss.registration.domain.PersonChangeDetector;
-import ch.martinelli.oss.registration.domain.PersonRepository;
+import ch.martinelli.oss.registration.domain.PersonImportService;
 import ch.martinelli.oss.registration.ui.components.Notification;
+import com.vaadin.flow.component.UI;
 import com.vaadin.flow.component.button.Button;
 import com.vaadin.flow.component.dialog.Dialog;
 import com.vaadin.flow.component.html.Div;
 import com.vaadin.flow.component.html.Paragraph;
 import com.vaadin.flow.component.orderedlayout.VerticalLayout;
+import com.vaadin.flow.component.progressbar.ProgressBar;
 import com.vaadin.flow.component.upload.Upload;
 import com.vaadin.flow.server.streams.UploadHandler;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
 
 import static com.vaadin.flow.i18n.I18NProvider.translate;
 
@@ -24,14 +31,16 @@ public class PersonUploadDialog extends Dialog {
 
     private final transient PersonChangeDetector personChangeDetector;
 
-    private final transient PersonRepository personRepository;
+    private final transient PersonImportService personImportService;
 
     private final transient Runnable onSuccess;
 
-    public PersonUploadDialog(PersonChangeDetector personChangeDetector, PersonRepository personRepository,
+    private final ProgressBar progressBar = new ProgressBar();
+
+    public PersonUploadDialog(PersonChangeDetector personChangeDetector, PersonImportService personImportService,
             Runnable onSuccess) {
         this.personChangeDetector = personChangeDetector;
-        this.personRepository = personRepository;
+        this.personImportService = personImportService;
         this.onSuccess = onSuccess;
 
         setHeaderTitle(translate("upload.persons.instructions.title"));
@@ -68,48 +77,68 @@ public class PersonUploadDialog extends Dialog {
             .set("border", "2px dashed var(--lumo-contrast-30pct)")
             .set("border-radius", "var(--lumo-border-radius-m)");
 
-        layout.add(instructions, uploadWrapper);
+        // Shown while the changes are detected
+        progressBar.setIndeterminate(true);
+        progressBar.setVisible(false);
+
+        layout.add(instructions, uploadWrapper, progressBar);
         return layout;
     }
 
     private @NotNull Upload getUpload() {
-        var uploadHandler = UploadHandler.inMemory((metadata, data) -> {
+        // The upload is streamed to a temporary file instead of being buffered in memory
+        var uploadHandler = UploadHandler.toTempFile((metadata, file) -> {
             try {
-                // Parse Excel file from byte array
+                // Parse Excel file row by row
                 var excelPersonParser = new ExcelPersonParser();
-                var excelData = excelPersonParser.parseExcelFile(data);
+                var excelData = new ArrayList<ExcelPersonData>();
+                excelPersonParser.parseExcelFile(file, excelData::add);
 
                 if (excelData.isEmpty()) {
                     Notification.error(translate("upload.persons.no.data"));
                     return;
                 }
 
-                // Detect changes
-                var changes = personChangeDetector.detectChanges(excelData);
-
-                if (changes.isEmpty()) {
-                    Notification.success(translate("upload.persons.no.changes"));
-                    close();
-                    return;
-                }
-
-                // Open review dialog
-                var dialog = new PersonImportDialog(changes, personRepository, () -> {
-                    if (onSuccess != null) {
-                        onSuccess.run();
-                    }
-                    close();
-                });
-                dialog.open();
-
+                // Detect changes in the background, the result is pushed to the UI
+                var ui = UI.getCurrent();
+                progressBar.setVisible(true);
+                personChangeDetector.detectChangesAsync(excelData)
+                    .whenComplete((changes, throwable) -> ui.access(() -> showChanges(changes, throwable)));
             }
             catch (IOException e) {
                 Notification.error(translate("upload.persons.error"));
             }
+            finally {
+                Files.deleteIfExists(file.toPath());
+            }
         });
 
         // Upload component
         return new Upload(uploadHandler);
     }
 
+    private void showChanges(List<PersonChange> changes, Throwable throwable) {
+        progressBar.setVisible(false);
+
+        if (throwable != null) {
+            Notification.error(translate("upload.persons.error"));
+            return;
+        }
+
+        if (changes.isEmpty()) {
+            Notification.success(translate("upload.persons.no.changes"));
+            close();
+            return;
+        }
+
+        // Open review dialog
+        var dialog = new PersonImportDialog(changes, personImportService, () -> {
+            if (onSuccess != null) {
+                onSuccess.run();
+            }
+            close();
+        });
+        dialog.open();
+    }
+
 }
@@ -3,12 +3,14 @@ package ch.martinelli.oss.registration.ui.views.persons;
 import ch.martinelli.oss.registration.db.tables.Person;
 import ch.martinelli.oss.registration.db.tables.records.PersonRecord;
 import ch.martinelli.oss.registration.domain.PersonChangeDetector;
+import ch.martinelli.oss.registration.domain.PersonImportService;
 import ch.martinelli.oss.registration.domain.PersonRepository;
 import ch.martinelli.oss.registration.security.Roles;
 import ch.martinelli.oss.registration.ui.components.I18nDatePicker;
 import ch.martinelli.oss.registration.ui.components.Icon;
 import ch.martinelli.oss.registration.ui.components.Notification;
 import ch.martinelli.oss.registration.ui.views.EditView;
+import ch.martinelli.oss.vaadinjooq.util.VaadinJooqUtil;
 import com.vaadin.flow.component.button.Button;
 import com.vaadin.flow.component.button.ButtonVariant;
 import com.vaadin.flow.component.checkbox.Checkbox;
@@ -24,11 +26,15 @@ import com.vaadin.flow.component.orderedlayout.FlexComponent;
 import com.vaadin.flow.component.orderedlayout.HorizontalLayout;
 import com.vaadin.flow.component.textfield.EmailField;
 import com.vaadin.flow.component.textfield.TextField;
+import com.vaadin.flow.component.textfield.TextFieldVariant;
 import com.vaadin.flow.data.binder.Binder;
+import com.vaadin.flow.data.value.ValueChangeMode;
 import com.vaadin.flow.router.BeforeEnterObserver;
 import com.vaadin.flow.router.HasDynamicTitle;
 import com.vaadin.flow.router.Route;
 import jakarta.annotation.security.RolesAllowed;
+import org.jooq.Condition;
+import org.jooq.impl.DSL;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.vaadin.lineawesome.LineAwesomeIcon;
 
@@ -43,12 +49,18 @@ public class PersonsView extends EditView<Person, PersonRecord, PersonRepository
 
     private boolean hideInactive;
 
+    private TextField searchTextField;
+
     private final transient PersonChangeDetector personChangeDetector;
 
-    public PersonsView(PersonRepository personRepository, PersonChangeDetector personChangeDetector) {
+    private final transient PersonImportService personImportService;
+
+    public PersonsView(PersonRepository personRepository, PersonChangeDetector personChangeDetector,
+            PersonImportService personImportService) {
         super(personRepository, PERSON, new Grid<>(PersonRecord.class, false), new Binder<>(PersonRecord.class));
 
         this.personChangeDetector = personChangeDetector;
+        this.personImportService = personImportService;
         this.hideInactive = true; // Initialize in constructor
         afterNewRecord = personRecord -> personRecord.setActive(true); // default value
     }
@@ -84,7 +96,18 @@ public class PersonsView extends EditView<Person, PersonRecord, PersonRepository
             grid.getDataProvider().refreshAll();
         });
 
-        toolbar.add(uploadButton, toggleInactiveButton);
+        // Search in names, email and member ID. Assigned here, as this method is called
+        // from the parent constructor.
+        searchTextField = new TextField();
+        searchTextField.setId("search-text-field");
+        searchTextField.setPlaceholder(translate("search"));
+        searchTextField.setPrefixComponent(LineAwesomeIcon.SEARCH_SOLID.create());
+        searchTextField.setClearButtonVisible(true);
+        searchTextField.addThemeVariants(TextFieldVariant.LUMO_SMALL);
+        searchTextField.setValueChangeMode(ValueChangeMode.LAZY);
+        searchTextField.addValueChangeListener(event -> grid.getDataProvider().refreshAll());
+
+        toolbar.add(searchTextField, uploadButton, toggleInactiveButton);
 
         wrapper.add(toolbar, grid);
 
@@ -131,11 +154,23 @@ public class PersonsView extends EditView<Person, PersonRecord, PersonRepository
 
     @Override
     protected void setItems() {
+        // The filter is part of the query, so the pages and the count match the rows
         grid.setItems(query -> repository
-            .findAll(query.getOffset(), query.getLimit(),
-                    ch.martinelli.oss.vaadinjooq.util.VaadinJooqUtil.orderFields(PERSON, query))
-            .stream()
-            .filter(person -> !hideInactive || Boolean.TRUE.equals(person.getActive())));
+            .findAll(getFilter(), query.getOffset(), query.getLimit(), VaadinJooqUtil.orderFields(PERSON, query))
+            .stream(), query -> repository.count(getFilter()));
+    }
+
+    private Condition getFilter() {
+        var condition = hideInactive ? PERSON.ACTIVE.isTrue() : DSL.noCondition();
+
+        var searchText = searchTextField.getValue().trim();
+        if (!searchText.isEmpty()) {
+            condition = condition.and(PERSON.LAST_NAME.containsIgnoreCase(searchText)
+                .or(PERSON.FIRST_NAME.containsIgnoreCase(searchText))
+                .or(PERSON.EMAIL.containsIgnoreCase(searchText))
+                .or(PERSON.MEMBER_ID.cast(String.class).contains(searchText)));
+        }
+        return condition;
     }
 
     protected void createComponents(FormLayout formLayout) {
@@ -206,7 +241,7 @@ public class PersonsView extends EditView<Person, PersonRecord, PersonRepository
         var uploadButton = new Button(translate("upload.persons"));
         uploadButton.addThemeVariants(ButtonVariant.LUMO_SMALL);
         uploadButton.addClickListener(event -> {
-            var dialog = new PersonUploadDialog(personChangeDetector, repository, () -> {
+            var dialog = new PersonUploadDialog(personChangeDetector, personImportService, () -> {
                 grid.getDataProvider().refreshAll();
                 clearForm();
             });
@@ -4,8 +4,11 @@ import ch.martinelli.oss.registration.db.tables.records.RegistrationRecord;
 import ch.martinelli.oss.registration.domain.EventRegistrationRepository;
 import ch.martinelli.oss.registration.domain.EventRegistrationRow;
 import ch.martinelli.oss.registration.domain.EventRegistrationService;
+import ch.martinelli.oss.registration.domain.ExportFormat;
+import ch.martinelli.oss.registration.domain.RegistrationExportService;
 import ch.martinelli.oss.registration.domain.RegistrationRepository;
 import ch.martinelli.oss.registration.security.Roles;
+import ch.martinelli.oss.registration.ui.components.ExportAnchor;
 import com.vaadin.flow.component.UI;
 import com.vaadin.flow.component.button.Button;
 import com.vaadin.flow.component.button.ButtonVariant;
@@ -38,19 +41,23 @@ public class EventRegistrationView extends Div implements HasUrlParameter<Long>,
 
     private final transient RegistrationRepository registrationRepository;
 
+    private final transient RegistrationExportService registrationExportService;
+
     private final Select<RegistrationRecord> registrationSelect = new Select<>();
 
     private Div gridContainer;
 
     private Long registrationId;
 
-    private Anchor excelExportAnchor;
+    private HorizontalLayout exportLayout;
 
     public EventRegistrationView(EventRegistrationService eventRegistrationService,
-            EventRegistrationRepository eventRegistrationRepository, RegistrationRepository registrationRepository) {
+            EventRegistrationRepository eventRegistrationRepository, RegistrationRepository registrationRepository,
+            RegistrationExportService registrationExportService) {
         this.eventRegistrationService = eventRegistrationService;
         this.eventRegistrationRepository = eventRegistrationRepository;
         this.registrationRepository = registrationRepository;
+        this.registrationExportService = registrationExportService;
 
         addClassNames("event-registrations-view");
         setSizeFull();
@@ -79,10 +86,10 @@ public class EventRegistrationView extends Div implements HasUrlParameter<Long>,
             if (registrationSelect.getValue() != null) {
                 this.registrationId = registrationSelect.getValue().getId();
                 createGrid();
-                excelExportAnchor.setVisible(true);
+                exportLayout.setVisible(true);
             }
             else {
-                excelExportAnchor.setVisible(false);
+                exportLayout.setVisible(false);
             }
         });
 
@@ -116,27 +123,29 @@ public class EventRegistrationView extends Div implements HasUrlParameter<Long>,
                 .setAutoWidth(true);
             grid.addColumn(EventRegistrationRow::firstName).setHeader(translate("first.name")).setAutoWidth(true);
 
-            var firstRow = eventRegistrationMatrix.getFirst();
-            firstRow.registrations().forEach((event, r) -> grid.addComponentColumn(registrationRow -> {
-                boolean registered = registrationRow.registrations().get(event);
-                if (registered) {
-                    return LineAwesomeIcon.CHECK_SOLID.create();
-                }
-                else {
-                    return new Span();
-                }
-            }).setHeader(event).setFooter(calculateNumberOfRegistrations(event)).setWidth("20px"));
+            var events = eventRegistrationMatrix.events();
+            for (var i = 0; i < events.size(); i++) {
+                var eventIndex = i;
+                var event = events.get(eventIndex);
+                grid.addComponentColumn(registrationRow -> {
+                    if (registrationRow.isRegistered(eventIndex)) {
+                        return LineAwesomeIcon.CHECK_SOLID.create();
+                    }
+                    else {
+                        return new Span();
+                    }
+                })
+                    .setHeader(event.getTitle())
+                    .setFooter(String.valueOf(eventRegistrationMatrix.total(eventIndex)))
+                    .setWidth("20px");
+            }
         }
 
-        grid.setItems(eventRegistrationMatrix);
+        grid.setItems(eventRegistrationMatrix.rows());
 
         gridContainer.add(new Div(grid));
     }
 
-    private String calculateNumberOfRegistrations(String event) {
-        return "" + eventRegistrationRepository.countRegistrationsByEvent(registrationId, event);
-    }
-
     private void createButtons() {
         var buttonLayout = new HorizontalLayout();
         buttonLayout.setClassName("button-layout");
@@ -146,20 +155,26 @@ public class EventRegistrationView extends Div implements HasUrlParameter<Long>,
         cancelButton.addClickListener(e -> UI.getCurrent().getPage().getHistory().back());
         buttonLayout.add(cancelButton);
 
-        excelExportAnchor = new Anchor(e -> {
+        var excelExportAnchor = new Anchor(e -> {
+            e.setFileName("event_registrations.xlsx");
             try (var outputStream = e.getOutputStream()) {
-                byte[] excel = eventRegistrationService.createEventRegistrationExcel(registrationId);
-                outputStream.write(excel);
-                e.setFileName("event_registrations.xlsx");
+                eventRegistrationService.writeEventRegistrationExcel(registrationId, outputStream);
             }
         }, "");
         excelExportAnchor.setTarget("_blank");
-        excelExportAnchor.setVisible(false);
 
         var excelExportButton = new Button(translate("export"), LineAwesomeIcon.FILE_EXCEL_SOLID.create());
         excelExportButton.addThemeVariants(ButtonVariant.LUMO_PRIMARY);
         excelExportAnchor.add(excelExportButton);
-        buttonLayout.add(excelExportAnchor);
+
+        exportLayout = new HorizontalLayout(excelExportAnchor);
+        for (var format : ExportFormat.values()) {
+            exportLayout.add(new ExportAnchor("event_registrations", format,
+                    (exportFormat, outputStream) -> registrationExportService.writeEventRegistrations(registrationId,
+                            exportFormat, outputStream)));
+        }
+        exportLayout.setVisible(false);
+        buttonLayout.add(exportLayout);
 
         add(buttonLayout);
     }
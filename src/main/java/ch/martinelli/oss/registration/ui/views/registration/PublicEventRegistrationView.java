@@ -3,10 +3,7 @@ package ch.martinelli.oss.registration.ui.views.registration;
 import ch.martinelli.oss.registration.db.tables.records.EventRecord;
 import ch.martinelli.oss.registration.db.tables.records.EventRegistrationRecord;
 import ch.martinelli.oss.registration.db.tables.records.PersonRecord;
-import ch.martinelli.oss.registration.db.tables.records.RegistrationEmailRecord;
-import ch.martinelli.oss.registration.domain.EventRegistrationRepository;
-import ch.martinelli.oss.registration.domain.RegistrationEmailRepository;
-import ch.martinelli.oss.registration.domain.RegistrationRepository;
+import ch.martinelli.oss.registration.domain.PublicRegistrationSnapshot;
 import ch.martinelli.oss.registration.domain.RegistrationService;
 import com.vaadin.flow.component.button.Button;
 import com.vaadin.flow.component.button.ButtonVariant;
@@ -31,33 +28,19 @@ import static com.vaadin.flow.i18n.I18NProvider.translate;
 @Route(value = "public", autoLayout = false)
 public class PublicEventRegistrationView extends VerticalLayout implements HasUrlParameter<String>, HasDynamicTitle {
 
-    private final transient RegistrationEmailRepository registrationEmailRepository;
-
-    private final transient RegistrationRepository registrationRepository;
-
     private final transient RegistrationService registrationService;
 
-    private final transient EventRegistrationRepository eventRegistrationRepository;
-
     private final transient Map<Checkbox, EventWithPerson> checkboxMap = new HashMap<>();
 
-    private RegistrationEmailRecord registrationEmail;
-
-    public PublicEventRegistrationView(RegistrationEmailRepository registrationEmailRepository,
-            RegistrationRepository registrationRepository, RegistrationService registrationService,
-            EventRegistrationRepository eventRegistrationRepository) {
-        this.registrationEmailRepository = registrationEmailRepository;
-        this.registrationRepository = registrationRepository;
+    public PublicEventRegistrationView(RegistrationService registrationService) {
         this.registrationService = registrationService;
-        this.eventRegistrationRepository = eventRegistrationRepository;
     }
 
     @Override
     public void setParameter(BeforeEvent event, String parameter) {
-        var optionalRegistrationEmail = registrationEmailRepository.findByLink(parameter);
-        if (optionalRegistrationEmail.isPresent()) {
-            registrationEmail = optionalRegistrationEmail.get();
-            showRegistrationForm();
+        var snapshot = registrationService.findPublicRegistrationSnapshot(parameter);
+        if (snapshot.isPresent()) {
+            showRegistrationForm(snapshot.get());
         }
         else {
             event.rerouteToError(NotFoundException.class);
@@ -65,10 +48,11 @@ public class PublicEventRegistrationView extends VerticalLayout implements HasUr
     }
 
     @SuppressWarnings("java:S3776")
-    private void showRegistrationForm() {
+    private void showRegistrationForm(PublicRegistrationSnapshot snapshot) {
         removeAll();
+        checkboxMap.clear();
 
-        var registration = registrationRepository.findById(registrationEmail.getRegistrationId()).orElseThrow();
+        var registration = snapshot.registration();
 
         // Check if registration period has ended
         var isRegistrationClosed = LocalDate.now().isAfter(registration.getOpenUntil());
@@ -92,7 +76,7 @@ public class PublicEventRegistrationView extends VerticalLayout implements HasUr
             add(new Paragraph(registration.getRemarks()));
         }
 
-        var persons = registrationEmailRepository.findPersonsByRegistrationEmailId(registrationEmail.getId());
+        var persons = snapshot.persons();
 
         add(new H3(translate("registration.for")));
 
@@ -108,12 +92,14 @@ public class PublicEventRegistrationView extends VerticalLayout implements HasUr
         add(new Hr());
         add(new H2(translate("events")));
 
-        var events = registrationRepository.findAllEventsByRegistrationId(registrationEmail.getRegistrationId());
+        var events = snapshot.events();
 
-        for (var event : events) {
+        for (var eventIndex = 0; eventIndex < events.size(); eventIndex++) {
+            var event = events.get(eventIndex);
             var isMandatory = Boolean.TRUE.equals(event.getMandatory());
             var checkboxes = new FormLayout();
-            for (var person : persons) {
+            for (var personIndex = 0; personIndex < persons.size(); personIndex++) {
+                var person = persons.get(personIndex);
                 String text;
                 if (persons.size() > 1) {
                     text = person.getLastName() + " " + person.getFirstName();
@@ -132,9 +118,8 @@ public class PublicEventRegistrationView extends VerticalLayout implements HasUr
                 }
                 else {
                     checkbox.setEnabled(!isRegistrationClosed);
-                    // Load existing registration state for optional events
-                    eventRegistrationRepository.findByEventIdAndPersonId(event.getId(), person.getId())
-                        .ifPresent(eventRegistration -> checkbox.setValue(eventRegistration.getRegistered()));
+                    // Existing registration state for optional events
+                    checkbox.setValue(snapshot.isRegistered(eventIndex, personIndex));
                 }
 
                 checkboxes.add(checkbox);
@@ -186,7 +171,7 @@ public class PublicEventRegistrationView extends VerticalLayout implements HasUr
                 eventRegistration.setRegistered(entry.getKey().getValue());
                 eventRegistrations.add(eventRegistration);
             }
-            boolean hasChanges = registrationService.register(registrationEmail.getId(), eventRegistrations);
+            boolean hasChanges = registrationService.register(snapshot.registrationEmailId(), eventRegistrations);
 
             if (hasChanges) {
                 // Registration was updated - email was sent
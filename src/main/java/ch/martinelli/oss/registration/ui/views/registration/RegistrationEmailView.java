@@ -1,15 +1,25 @@
 package ch.martinelli.oss.registration.ui.views.registration;
 
+import ch.martinelli.oss.registration.db.enums.MailOutboxStatus;
 import ch.martinelli.oss.registration.db.tables.records.RegistrationEmailViewRecord;
 import ch.martinelli.oss.registration.db.tables.records.RegistrationRecord;
+import ch.martinelli.oss.registration.domain.ExportFormat;
+import ch.martinelli.oss.registration.domain.MailingProgressBroadcaster;
+import ch.martinelli.oss.registration.domain.MailingProgressEvent;
 import ch.martinelli.oss.registration.domain.RegistrationEmailRepository;
+import ch.martinelli.oss.registration.domain.RegistrationExportService;
 import ch.martinelli.oss.registration.domain.RegistrationRepository;
+import ch.martinelli.oss.registration.domain.RegistrationService;
 import ch.martinelli.oss.registration.security.Roles;
+import ch.martinelli.oss.registration.security.SecurityContext;
 import ch.martinelli.oss.registration.ui.components.DateFormat;
+import ch.martinelli.oss.registration.ui.components.ExportAnchor;
 import ch.martinelli.oss.registration.ui.components.Icon;
 import ch.martinelli.oss.registration.ui.components.Notification;
 import ch.martinelli.oss.vaadinjooq.util.VaadinJooqUtil;
+import com.vaadin.flow.component.AttachEvent;
 import com.vaadin.flow.component.Component;
+import com.vaadin.flow.component.DetachEvent;
 import com.vaadin.flow.component.button.Button;
 import com.vaadin.flow.component.button.ButtonVariant;
 import com.vaadin.flow.component.confirmdialog.ConfirmDialog;
@@ -29,7 +39,10 @@ import org.jooq.Condition;
 import org.jooq.impl.DSL;
 import org.vaadin.lineawesome.LineAwesomeIcon;
 
+import java.time.LocalDateTime;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import static ch.martinelli.oss.registration.db.tables.Registration.REGISTRATION;
 import static ch.martinelli.oss.registration.db.tables.RegistrationEmailView.REGISTRATION_EMAIL_VIEW;
@@ -43,20 +56,73 @@ public class RegistrationEmailView extends Div implements HasUrlParameter<Long>,
 
     private final transient RegistrationRepository registrationRepository;
 
+    private final transient RegistrationService registrationService;
+
+    private final transient SecurityContext securityContext;
+
+    private final transient MailingProgressBroadcaster mailingProgressBroadcaster;
+
+    private final transient RegistrationExportService registrationExportService;
+
     private final Grid<RegistrationEmailViewRecord> grid = new Grid<>(RegistrationEmailViewRecord.class, false);
 
     private final Select<RegistrationRecord> registrationSelect = new Select<>();
 
+    private final Map<Long, RegistrationEmailViewRecord> loadedRegistrationEmails = new HashMap<>();
+
+    private Runnable mailingProgressRegistration;
+
     public RegistrationEmailView(RegistrationEmailRepository registrationEmailRepository,
-            RegistrationRepository registrationRepository) {
+            RegistrationRepository registrationRepository, RegistrationService registrationService,
+            SecurityContext securityContext, MailingProgressBroadcaster mailingProgressBroadcaster,
+            RegistrationExportService registrationExportService) {
         this.registrationEmailRepository = registrationEmailRepository;
         this.registrationRepository = registrationRepository;
+        this.registrationService = registrationService;
+        this.securityContext = securityContext;
+        this.mailingProgressBroadcaster = mailingProgressBroadcaster;
+        this.registrationExportService = registrationExportService;
 
         setSizeFull();
 
         add(createFilter(), createGrid());
     }
 
+    @Override
+    protected void onAttach(AttachEvent attachEvent) {
+        var ui = attachEvent.getUI();
+        mailingProgressRegistration = mailingProgressBroadcaster
+            .register(event -> ui.access(() -> updateMailingProgress(event)));
+    }
+
+    @Override
+    protected void onDetach(DetachEvent detachEvent) {
+        mailingProgressRegistration.run();
+        mailingProgressRegistration = null;
+    }
+
+    /**
+     * Updates only the rows of the changed invitations instead of reloading the grid.
+     */
+    private void updateMailingProgress(MailingProgressEvent event) {
+        if (registrationSelect.getValue() == null
+                || !registrationSelect.getValue().getId().equals(event.registrationId())) {
+            return;
+        }
+        var now = LocalDateTime.now();
+        for (var invitation : event.invitations()) {
+            var registrationEmailViewRecord = loadedRegistrationEmails.get(invitation.registrationEmailId());
+            if (registrationEmailViewRecord != null) {
+                registrationEmailViewRecord.setMailStatus(invitation.status());
+                registrationEmailViewRecord.setMailLastError(invitation.lastError());
+                if (invitation.status() == MailOutboxStatus.SENT) {
+                    registrationEmailViewRecord.setSentAt(now);
+                }
+                grid.getDataProvider().refreshItem(registrationEmailViewRecord);
+            }
+        }
+    }
+
     @Override
     public void setParameter(BeforeEvent event, @OptionalParameter Long registrationId) {
         if (registrationId != null) {
@@ -69,7 +135,19 @@ public class RegistrationEmailView extends Div implements HasUrlParameter<Long>,
         registrationSelect.setItemLabelGenerator(r -> "%s %s".formatted(r.getTitle(), r.getYear().toString()));
         registrationSelect.setItems(registrationRepository.findAll(DSL.noCondition(),
                 List.of(REGISTRATION.YEAR.desc(), REGISTRATION.TITLE)));
-        registrationSelect.addValueChangeListener(e -> grid.getDataProvider().refreshAll());
+        var exportLayout = new HorizontalLayout();
+        for (var format : ExportFormat.values()) {
+            exportLayout.add(new ExportAnchor("registration_emails", format,
+                    (exportFormat, outputStream) -> registrationExportService
+                        .writeRegistrationEmails(registrationSelect.getValue().getId(), exportFormat, outputStream)));
+        }
+        exportLayout.setVisible(false);
+
+        registrationSelect.addValueChangeListener(e -> {
+            loadedRegistrationEmails.clear();
+            grid.getDataProvider().refreshAll();
+            exportLayout.setVisible(e.getValue() != null);
+        });
 
         var resetButton = new Button(translate("reset"));
         resetButton.addThemeVariants(ButtonVariant.LUMO_TERTIARY);
@@ -78,7 +156,7 @@ public class RegistrationEmailView extends Div implements HasUrlParameter<Long>,
             grid.getDataProvider().refreshAll();
         });
 
-        var formLayout = new FormLayout(registrationSelect, new HorizontalLayout(resetButton));
+        var formLayout = new FormLayout(registrationSelect, new HorizontalLayout(resetButton, exportLayout));
         formLayout.setResponsiveSteps(new FormLayout.ResponsiveStep("0", 2));
 
         return new VerticalLayout(formLayout);
@@ -106,6 +184,13 @@ public class RegistrationEmailView extends Div implements HasUrlParameter<Long>,
             .setSortProperty(REGISTRATION_EMAIL_VIEW.SENT_AT.getName())
             .setHeader(translate("sent"))
             .setAutoWidth(true);
+        grid.addColumn(registrationEmailViewRecord -> registrationEmailViewRecord.getMailStatus() != null
+                ? translate("mail.status." + registrationEmailViewRecord.getMailStatus().name().toLowerCase()) : "")
+            .setTooltipGenerator(RegistrationEmailViewRecord::getMailLastError)
+            .setSortable(true)
+            .setSortProperty(REGISTRATION_EMAIL_VIEW.MAIL_STATUS.getName())
+            .setHeader(translate("mail.status"))
+            .setAutoWidth(true);
         grid.addColumn(registrationEmailViewRecord -> registrationEmailViewRecord.getRegisteredAt() != null
                 ? DateFormat.DATE_TIME_FORMAT.format(registrationEmailViewRecord.getRegisteredAt()) : "")
             .setSortable(true)
@@ -120,7 +205,8 @@ public class RegistrationEmailView extends Div implements HasUrlParameter<Long>,
 
             var deleteIcon = new Icon(LineAwesomeIcon.TRASH_SOLID, e -> new ConfirmDialog(translate("delete.record"),
                     translate("delete.record.question"), translate("yes"), ce -> {
-                        registrationEmailRepository.deleteById(registrationEmailViewRecord.getRegistrationEmailId());
+                        registrationService
+                            .deleteRegistrationEmail(registrationEmailViewRecord.getRegistrationEmailId());
                         grid.getDataProvider().refreshAll();
 
                         Notification.success(translate("delete.record.success"));
@@ -130,15 +216,38 @@ public class RegistrationEmailView extends Div implements HasUrlParameter<Long>,
             deleteIcon.setId("delete-action");
             deleteIcon.addClassName("delete-icon");
 
-            var actionLayout = new HorizontalLayout(link, deleteIcon);
+            var actionLayout = new HorizontalLayout(link);
+            if (registrationEmailViewRecord.getMailStatus() == MailOutboxStatus.FAILED) {
+                var requeueIcon = new Icon(LineAwesomeIcon.REDO_ALT_SOLID, e -> {
+                    var queued = registrationService.requeueInvitation(
+                            registrationEmailViewRecord.getRegistrationEmailId(), securityContext.getUsername());
+                    if (queued) {
+                        // Hides the requeue icon until the worker reports the result
+                        registrationEmailViewRecord.setMailStatus(MailOutboxStatus.PENDING);
+                        registrationEmailViewRecord.setMailLastError(null);
+                        grid.getDataProvider().refreshItem(registrationEmailViewRecord);
+
+                        Notification.success(translate("requeue.mail.success"));
+                    }
+                    else {
+                        Notification.error(translate("requeue.mail.queued"));
+                    }
+                });
+                requeueIcon.setId("requeue-action");
+                requeueIcon.setTooltipText(translate("requeue.mail"));
+                actionLayout.add(requeueIcon);
+            }
+            actionLayout.add(deleteIcon);
             actionLayout.setJustifyContentMode(FlexComponent.JustifyContentMode.END);
             return actionLayout;
         }).setTextAlign(ColumnTextAlign.END).setKey("action-column").setWidth("200px");
 
-        grid.setItems(query -> registrationEmailRepository
-            .findAllFromView(getFilter(), query.getOffset(), query.getLimit(),
-                    VaadinJooqUtil.orderFields(REGISTRATION_EMAIL_VIEW, query))
-            .stream());
+        grid.setItems(query -> {
+            var registrationEmails = registrationEmailRepository.findAllFromView(getFilter(), query.getOffset(),
+                    query.getLimit(), VaadinJooqUtil.orderFields(REGISTRATION_EMAIL_VIEW, query));
+            registrationEmails.forEach(r -> loadedRegistrationEmails.put(r.getRegistrationEmailId(), r));
+            return registrationEmails.stream();
+        }).setIdentifierProvider(RegistrationEmailViewRecord::getRegistrationEmailId);
 
         return grid;
     }
@@ -4,7 +4,10 @@ import ch.martinelli.oss.registration.db.tables.records.EventRecord;
 import ch.martinelli.oss.registration.db.tables.records.PersonRecord;
 import ch.martinelli.oss.registration.db.tables.records.RegistrationRecord;
 import ch.martinelli.oss.registration.db.tables.records.RegistrationViewRecord;
+import ch.martinelli.oss.registration.domain.ConfirmationTemplate;
 import ch.martinelli.oss.registration.domain.EventRepository;
+import ch.martinelli.oss.registration.domain.MailingProgressBroadcaster;
+import ch.martinelli.oss.registration.domain.MailingProgressEvent;
 import ch.martinelli.oss.registration.domain.PersonRepository;
 import ch.martinelli.oss.registration.domain.RegistrationRepository;
 import ch.martinelli.oss.registration.domain.RegistrationService;
@@ -14,7 +17,9 @@ import ch.martinelli.oss.registration.ui.components.I18nDatePicker;
 import ch.martinelli.oss.registration.ui.components.Icon;
 import ch.martinelli.oss.registration.ui.components.Notification;
 import ch.martinelli.oss.vaadinjooq.util.VaadinJooqUtil;
+import com.vaadin.flow.component.AttachEvent;
 import com.vaadin.flow.component.Component;
+import com.vaadin.flow.component.DetachEvent;
 import com.vaadin.flow.component.HasEnabled;
 import com.vaadin.flow.component.UI;
 import com.vaadin.flow.component.button.Button;
@@ -38,6 +43,8 @@ import com.vaadin.flow.component.textfield.TextArea;
 import com.vaadin.flow.component.textfield.TextField;
 import com.vaadin.flow.data.binder.Binder;
 import com.vaadin.flow.data.binder.ValidationException;
+import com.vaadin.flow.data.binder.ValidationResult;
+import com.vaadin.flow.data.binder.ValueContext;
 import com.vaadin.flow.data.provider.CallbackDataProvider;
 import com.vaadin.flow.data.provider.SortDirection;
 import com.vaadin.flow.router.*;
@@ -48,8 +55,10 @@ import org.springframework.dao.DataIntegrityViolationException;
 import org.vaadin.lineawesome.LineAwesomeIcon;
 
 import java.time.LocalDate;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 
 import static ch.martinelli.oss.registration.db.tables.Event.EVENT;
 import static ch.martinelli.oss.registration.db.tables.Person.PERSON;
@@ -83,6 +92,8 @@ public class RegistrationView extends Div implements BeforeEnterObserver, HasDyn
 
     private final transient SecurityContext securityContext;
 
+    private final transient MailingProgressBroadcaster mailingProgressBroadcaster;
+
     private final Grid<RegistrationViewRecord> grid = new Grid<>(RegistrationViewRecord.class, false);
 
     private MultiSelectListBox<EventRecord> eventListBox;
@@ -107,13 +118,21 @@ public class RegistrationView extends Div implements BeforeEnterObserver, HasDyn
 
     private boolean hidePastInvitations = true;
 
+    private final Map<Long, RegistrationViewRecord> loadedRegistrations = new HashMap<>();
+
+    private final Map<Long, MailingProgressEvent> mailingProgress = new HashMap<>();
+
+    private Runnable mailingProgressRegistration;
+
     public RegistrationView(RegistrationService registrationService, RegistrationRepository registrationRepository,
-            EventRepository eventRepository, PersonRepository personRepository, SecurityContext securityContext) {
+            EventRepository eventRepository, PersonRepository personRepository, SecurityContext securityContext,
+            MailingProgressBroadcaster mailingProgressBroadcaster) {
         this.registrationService = registrationService;
         this.registrationRepository = registrationRepository;
         this.eventRepository = eventRepository;
         this.personRepository = personRepository;
         this.securityContext = securityContext;
+        this.mailingProgressBroadcaster = mailingProgressBroadcaster;
 
         addClassNames("registrations-view");
 
@@ -127,6 +146,31 @@ public class RegistrationView extends Div implements BeforeEnterObserver, HasDyn
         add(splitLayout);
     }
 
+    @Override
+    protected void onAttach(AttachEvent attachEvent) {
+        var ui = attachEvent.getUI();
+        mailingProgressRegistration = mailingProgressBroadcaster
+            .register(event -> ui.access(() -> updateMailingProgress(event)));
+    }
+
+    @Override
+    protected void onDetach(DetachEvent detachEvent) {
+        mailingProgressRegistration.run();
+        mailingProgressRegistration = null;
+    }
+
+    /**
+     * Updates only the row of the registration instead of reloading the grid.
+     */
+    private void updateMailingProgress(MailingProgressEvent event) {
+        mailingProgress.put(event.registrationId(), event);
+        var registrationViewRecord = loadedRegistrations.get(event.registrationId());
+        if (registrationViewRecord != null) {
+            registrationViewRecord.setEmailSentCount((long) event.progress().sent());
+            grid.getDataProvider().refreshItem(registrationViewRecord);
+        }
+    }
+
     @Override
     public void beforeEnter(BeforeEnterEvent event) {
         var eventId = event.getRouteParameters().get(ID).map(Long::parseLong);
@@ -204,7 +248,7 @@ public class RegistrationView extends Div implements BeforeEnterObserver, HasDyn
             .setSortProperty(REGISTRATION.OPEN_UNTIL.getName())
             .setHeader(translate("open.until"));
         grid.addComponentColumn(r -> createIcon(r.getEmailCreatedCount())).setHeader(translate("mailing.created"));
-        grid.addComponentColumn(r -> createIcon(r.getEmailSentCount())).setHeader(translate("emails.sent"));
+        grid.addComponentColumn(this::createEmailsSentComponent).setHeader(translate("emails.sent"));
 
         var addIcon = new Icon(LineAwesomeIcon.PLUS_CIRCLE_SOLID, e -> {
             loadData();
@@ -230,7 +274,7 @@ public class RegistrationView extends Div implements BeforeEnterObserver, HasDyn
 
             var deleteIcon = new Icon(LineAwesomeIcon.TRASH_SOLID, e -> new ConfirmDialog(translate("delete.record"),
                     translate("delete.record.question"), translate("yes"), ce -> {
-                        registrationRepository.deleteById(registrationViewRecord.getId());
+                        registrationService.delete(registrationViewRecord.getId());
 
                         clearForm();
                         loadData();
@@ -274,14 +318,24 @@ public class RegistrationView extends Div implements BeforeEnterObserver, HasDyn
         return value > 0 ? LineAwesomeIcon.CHECK_SOLID.create() : new Span();
     }
 
+    private Component createEmailsSentComponent(RegistrationViewRecord registrationViewRecord) {
+        var event = mailingProgress.get(registrationViewRecord.getId());
+        if (event != null && event.progress().isRunning()) {
+            return new Span(translate("mailing.progress", event.progress().sent(), event.progress().total(),
+                    event.progress().failed(), "%.1f".formatted(event.messagesPerSecond())));
+        }
+        return createIcon(registrationViewRecord.getEmailSentCount());
+    }
+
     private void loadData() {
+        loadedRegistrations.clear();
         var dataProvider = new CallbackDataProvider<RegistrationViewRecord, Void>(query -> {
             var condition = hidePastInvitations ? REGISTRATION_VIEW.YEAR.greaterOrEqual(LocalDate.now().getYear())
                 .and(REGISTRATION_VIEW.OPEN_UNTIL.greaterOrEqual(LocalDate.now())) : DSL.noCondition();
-            return registrationRepository
-                .findAllFromView(condition, query.getOffset(), query.getLimit(),
-                        VaadinJooqUtil.orderFields(REGISTRATION_VIEW, query))
-                .stream();
+            var registrations = registrationRepository.findAllFromView(condition, query.getOffset(), query.getLimit(),
+                    VaadinJooqUtil.orderFields(REGISTRATION_VIEW, query));
+            registrations.forEach(r -> loadedRegistrations.put(r.getId(), r));
+            return registrations.stream();
         }, query -> {
             var condition = hidePastInvitations ? REGISTRATION_VIEW.YEAR.greaterOrEqual(LocalDate.now().getYear())
                 .and(REGISTRATION_VIEW.OPEN_UNTIL.greaterOrEqual(LocalDate.now())) : DSL.noCondition();
@@ -363,6 +417,7 @@ public class RegistrationView extends Div implements BeforeEnterObserver, HasDyn
         confirmationTextNew.setPlaceholder(translate("confirmation.email.text.placeholder"));
         confirmationTextNew.setHeight(PX_200);
         binder.forField(confirmationTextNew)
+            .withValidator(this::validatePlaceholders)
             .bind(RegistrationRecord::getConfirmationEmailTextNew, RegistrationRecord::setConfirmationEmailTextNew);
         formLayout.setColspan(confirmationTextNew, 2);
 
@@ -376,6 +431,7 @@ public class RegistrationView extends Div implements BeforeEnterObserver, HasDyn
         confirmationTextUpdate.setPlaceholder(translate("confirmation.email.text.placeholder"));
         confirmationTextUpdate.setHeight(PX_200);
         binder.forField(confirmationTextUpdate)
+            .withValidator(this::validatePlaceholders)
             .bind(RegistrationRecord::getConfirmationEmailTextUpdate,
                     RegistrationRecord::setConfirmationEmailTextUpdate);
         formLayout.setColspan(confirmationTextUpdate, 2);
@@ -440,6 +496,15 @@ public class RegistrationView extends Div implements BeforeEnterObserver, HasDyn
         return editorLayoutDiv;
     }
 
+    private ValidationResult validatePlaceholders(String text, ValueContext context) {
+        var unknownPlaceholders = ConfirmationTemplate.findUnknownPlaceholders(text);
+        if (unknownPlaceholders.isEmpty()) {
+            return ValidationResult.ok();
+        }
+        return ValidationResult
+            .error(translate("confirmation.email.placeholders.unknown", String.join(", ", unknownPlaceholders)));
+    }
+
     private void setDirty(boolean fromClient) {
         if (fromClient) {
             dirty = true;
@@ -489,13 +554,10 @@ public class RegistrationView extends Div implements BeforeEnterObserver, HasDyn
             if (this.registration != null) {
                 new ConfirmDialog(translate(CREATE_MAILING), translate("create.mailing.confirm"), translate("yes"),
                         confirmEvent -> {
-                            if (registrationService.createMailing(this.registration)) {
-                                Notification.success(translate("create.mailing.success"));
-                                refreshGridButPreserveSelection(this.registration.getId());
-                            }
-                            else {
-                                Notification.error(getTranslation("create.mailing.error"));
-                            }
+                            var mailingResult = registrationService.createMailing(this.registration);
+                            Notification.success(translate("create.mailing.success", mailingResult.created(),
+                                    mailingResult.reused()));
+                            refreshGridButPreserveSelection(this.registration.getId());
                         }, translate(CANCEL), cancelEvent -> {
                         })
                     .open();
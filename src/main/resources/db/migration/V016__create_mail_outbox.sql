@@ -0,0 +1,23 @@
+create type mail_outbox_status as enum ('PENDING', 'SENDING', 'SENT', 'FAILED');
+
+create sequence mail_outbox_seq start with 1000;
+
+create table mail_outbox
+(
+    id                    bigint             not null primary key default nextval('mail_outbox_seq'),
+    registration_email_id bigint             not null,
+    reply_to              varchar,
+    status                mail_outbox_status not null default 'PENDING',
+    attempts              integer            not null default 0,
+    next_attempt_at       timestamp          not null default now(),
+    last_error            varchar,
+    created_at            timestamp          not null default now(),
+
+    foreign key (registration_email_id) references registration_email (id) on delete cascade
+);
+
+-- Rows the workers have to look at: pending ones and sending ones whose lease may have expired
+create index mail_outbox_next_attempt_at_idx on mail_outbox (next_attempt_at) where status in ('PENDING', 'SENDING');
+
+-- A registration email must not be queued twice while it is still in flight
+create unique index mail_outbox_registration_email_id_key on mail_outbox (registration_email_id) where status in ('PENDING', 'SENDING');
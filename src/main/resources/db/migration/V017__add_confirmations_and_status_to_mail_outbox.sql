@@ -0,0 +1,35 @@
+create type mail_outbox_kind as enum ('INVITATION', 'CONFIRMATION');
+
+-- Confirmations are rendered when they are sent, so only the kind of confirmation is stored
+alter table mail_outbox
+    add column kind               mail_outbox_kind not null default 'INVITATION',
+    add column first_registration boolean;
+
+-- Only invitations are unique per registration email, confirmations may be queued several times
+drop index mail_outbox_registration_email_id_key;
+
+create unique index mail_outbox_registration_email_id_key on mail_outbox (registration_email_id) where kind = 'INVITATION' and status in ('PENDING', 'SENDING');
+
+create index mail_outbox_registration_email_id_idx on mail_outbox (registration_email_id, id);
+
+drop view registration_email_view;
+
+create view registration_email_view as
+select r.id  as registration_id,
+       r.year,
+       re.id as registration_email_id,
+       re.email,
+       re.link,
+       re.sent_at,
+       re.registered_at,
+       mo.status     as mail_status,
+       mo.attempts   as mail_attempts,
+       mo.last_error as mail_last_error
+from registration_email re
+         join registration r on re.registration_id = r.id
+         left join lateral (select status, attempts, last_error
+                            from mail_outbox
+                            where registration_email_id = re.id
+                              and kind = 'INVITATION'
+                            order by id desc
+                            limit 1) mo on true;
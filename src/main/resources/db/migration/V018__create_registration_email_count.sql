@@ -0,0 +1,90 @@
+-- Number of created and sent registration emails per registration, maintained by triggers
+create table registration_email_count
+(
+    registration_id     bigint not null primary key,
+    email_created_count bigint not null default 0,
+    email_sent_count    bigint not null default 0,
+
+    foreign key (registration_id) references registration (id) on delete cascade
+);
+
+insert into registration_email_count (registration_id, email_created_count, email_sent_count)
+select registration_id, count(*), count(sent_at)
+from registration_email
+group by registration_id;
+
+-- Statement level triggers, so a mailing inserted with one statement updates the counters once
+create function update_registration_email_count() returns trigger
+    language plpgsql as
+$$
+begin
+    if tg_op = 'DELETE' then
+        -- Update only, the registration may be deleted in the same statement
+        update registration_email_count c
+        set email_created_count = c.email_created_count - d.created_count,
+            email_sent_count    = c.email_sent_count - d.sent_count
+        from (select registration_id, count(*) as created_count, count(sent_at) as sent_count
+              from old_rows
+              group by registration_id) d
+        where c.registration_id = d.registration_id;
+    elsif tg_op = 'INSERT' then
+        insert into registration_email_count (registration_id, email_created_count, email_sent_count)
+        select registration_id, count(*), count(sent_at)
+        from new_rows
+        group by registration_id
+        on conflict (registration_id) do update
+            set email_created_count = registration_email_count.email_created_count + excluded.email_created_count,
+                email_sent_count    = registration_email_count.email_sent_count + excluded.email_sent_count;
+    else
+        -- Most updates, e.g. of registered_at, do not change the counters
+        insert into registration_email_count (registration_id, email_created_count, email_sent_count)
+        select registration_id, sum(created_count), sum(sent_count)
+        from (select registration_id, 1 as created_count, (sent_at is not null)::int as sent_count
+              from new_rows
+              union all
+              select registration_id, -1, -(sent_at is not null)::int
+              from old_rows) d
+        group by registration_id
+        having sum(created_count) <> 0
+            or sum(sent_count) <> 0
+        on conflict (registration_id) do update
+            set email_created_count = registration_email_count.email_created_count + excluded.email_created_count,
+                email_sent_count    = registration_email_count.email_sent_count + excluded.email_sent_count;
+    end if;
+    return null;
+end;
+$$;
+
+create trigger registration_email_count_insert
+    after insert
+    on registration_email
+    referencing new table as new_rows
+    for each statement
+execute function update_registration_email_count();
+
+create trigger registration_email_count_update
+    after update
+    on registration_email
+    referencing old table as old_rows new table as new_rows
+    for each statement
+execute function update_registration_email_count();
+
+create trigger registration_email_count_delete
+    after delete
+    on registration_email
+    referencing old table as old_rows
+    for each statement
+execute function update_registration_email_count();
+
+drop view registration_view;
+
+create view registration_view as
+select r.id,
+       r.title,
+       r.year,
+       r.open_from,
+       r.open_until,
+       coalesce(c.email_created_count, 0) as email_created_count,
+       coalesce(c.email_sent_count, 0)    as email_sent_count
+from registration r
+         left join registration_email_count c on c.registration_id = r.id;
@@ -0,0 +1,4 @@
+-- The primary key leads with registration_id and event_id, so lookups of the registrations of a
+-- person, e.g. by registration email, and the person foreign key need their own index.
+-- Including registered allows index only scans.
+create index event_registration_person_id_idx on event_registration (person_id, registration_id, event_id) include (registered);
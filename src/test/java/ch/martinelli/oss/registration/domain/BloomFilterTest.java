@@ -0,0 +1,32 @@
+package ch.martinelli.oss.registration.domain;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BloomFilterTest {
+
+    @Test
+    void contains_every_value_that_was_put() {
+        var filter = BloomFilter.create(1000, 0.01);
+        var values = IntStream.range(0, 1000).mapToObj(i -> UUID.randomUUID().toString()).toList();
+
+        values.forEach(filter::put);
+
+        assertThat(values).allMatch(filter::mightContain);
+    }
+
+    @Test
+    void false_positives_are_close_to_the_probability() {
+        var filter = BloomFilter.create(10_000, 0.01);
+        IntStream.range(0, 10_000).forEach(i -> filter.put("link" + i));
+
+        var falsePositives = IntStream.range(0, 100_000).filter(i -> filter.mightContain("unknown" + i)).count();
+
+        assertThat(falsePositives).isLessThan(2_000);
+    }
+
+}
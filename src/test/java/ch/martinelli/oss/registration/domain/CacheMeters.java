@@ -0,0 +1,34 @@
+package ch.martinelli.oss.registration.domain;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Meter registry of a cache under test that reads the {@code cache.gets} metrics of the
+ * caches.
+ */
+class CacheMeters {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    MeterRegistry registry() {
+        return meterRegistry;
+    }
+
+    double hits(String cache) {
+        return gets(cache, "hit");
+    }
+
+    double misses(String cache) {
+        return gets(cache, "miss");
+    }
+
+    double count(String counter) {
+        return meterRegistry.get(counter).counter().count();
+    }
+
+    private double gets(String cache, String result) {
+        return meterRegistry.get("cache.gets").tag("cache", cache).tag("result", result).functionCounter().count();
+    }
+
+}
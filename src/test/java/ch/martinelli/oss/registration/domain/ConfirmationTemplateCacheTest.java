@@ -0,0 +1,30 @@
+package ch.martinelli.oss.registration.domain;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static ch.martinelli.oss.registration.domain.ConfirmationTemplate.Placeholder.PERSON_NAMES;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ConfirmationTemplateCacheTest {
+
+    private final ConfirmationTemplateCache confirmationTemplateCache = new ConfirmationTemplateCache();
+
+    @Test
+    void get_returns_cached_template_of_same_text() {
+        var template = confirmationTemplateCache.get("Hallo %PERSON_NAMES%");
+
+        assertThat(confirmationTemplateCache.get("Hallo %PERSON_NAMES%")).isSameAs(template);
+    }
+
+    @Test
+    void get_parses_changed_text() {
+        confirmationTemplateCache.get("Hallo %PERSON_NAMES%");
+
+        var changed = confirmationTemplateCache.get("Guten Tag %PERSON_NAMES%");
+
+        assertThat(changed.render(Map.of(PERSON_NAMES, "Peter Meier"))).isEqualTo("Guten Tag Peter Meier");
+    }
+
+}
@@ -0,0 +1,56 @@
+package ch.martinelli.oss.registration.domain;
+
+import ch.martinelli.oss.registration.domain.ConfirmationTemplate.Placeholder;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static ch.martinelli.oss.registration.domain.ConfirmationTemplate.Placeholder.LINK;
+import static ch.martinelli.oss.registration.domain.ConfirmationTemplate.Placeholder.PERSON_NAMES;
+import static ch.martinelli.oss.registration.domain.ConfirmationTemplate.Placeholder.REMARKS;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ConfirmationTemplateTest {
+
+    @Test
+    void render_replaces_all_placeholders() {
+        var template = ConfirmationTemplate.parse("Hallo %PERSON_NAMES%\n\n%LINK%\n%LINK%");
+
+        var text = template.render(Map.of(PERSON_NAMES, "Peter Meier", LINK, "https://example.com"));
+
+        assertThat(text).isEqualTo("Hallo Peter Meier\n\nhttps://example.com\nhttps://example.com");
+    }
+
+    @Test
+    void render_replaces_missing_values_with_empty_string() {
+        var template = ConfirmationTemplate.parse("Bemerkungen: %REMARKS%.");
+
+        assertThat(template.render(Map.of())).isEqualTo("Bemerkungen: .");
+    }
+
+    @Test
+    void render_does_not_replace_placeholders_in_values() {
+        var template = ConfirmationTemplate.parse("%REMARKS% %LINK%");
+
+        var text = template.render(Map.<Placeholder, String>of(REMARKS, "%LINK%", LINK, "https://example.com"));
+
+        assertThat(text).isEqualTo("%LINK% https://example.com");
+    }
+
+    @Test
+    void unknown_placeholders_and_percent_signs_are_kept() {
+        var template = ConfirmationTemplate.parse("50% Rabatt %UNKNOWN% %LINK%");
+
+        assertThat(template.render(Map.of(LINK, "https://example.com")))
+            .isEqualTo("50% Rabatt %UNKNOWN% https://example.com");
+    }
+
+    @Test
+    void find_unknown_placeholders() {
+        assertThat(ConfirmationTemplate.findUnknownPlaceholders("%PERSON_NAMES% %NAME% %EVENTS% %DATE% %NAME%"))
+            .containsExactly("%NAME%", "%DATE%");
+        assertThat(ConfirmationTemplate.findUnknownPlaceholders("%LINK%")).isEmpty();
+        assertThat(ConfirmationTemplate.findUnknownPlaceholders(null)).isEmpty();
+    }
+
+}
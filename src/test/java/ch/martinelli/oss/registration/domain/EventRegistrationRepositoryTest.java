@@ -1,29 +1,178 @@
 package ch.martinelli.oss.registration.domain;
 
 import ch.martinelli.oss.registration.TestcontainersConfiguration;
+import ch.martinelli.oss.registration.db.tables.records.EventRecord;
+import ch.martinelli.oss.registration.db.tables.records.EventRegistrationRecord;
+import org.jooq.DSLContext;
+import org.jooq.ExecuteListener;
+import org.jooq.Explain;
+import org.jooq.Query;
+import org.jooq.impl.SQLDataType;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static ch.martinelli.oss.registration.db.tables.Event.EVENT;
+import static ch.martinelli.oss.registration.db.tables.EventRegistration.EVENT_REGISTRATION;
+import static ch.martinelli.oss.registration.db.tables.Person.PERSON;
+import static ch.martinelli.oss.registration.db.tables.Registration.REGISTRATION;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.jooq.impl.DSL.generateSeries;
+import static org.jooq.impl.DSL.select;
+import static org.jooq.impl.DSL.val;
 
 @Import(TestcontainersConfiguration.class)
 @SpringBootTest
 class EventRegistrationRepositoryTest {
 
+    private static final int HISTORY_REGISTRATIONS = 1000;
+
+    private static final int HISTORY_ID_OFFSET = 1000;
+
+    // Bitmap, index and index only scans on one of the indexes of event_registration
+    private static final String EVENT_REGISTRATION_INDEX_SCAN = "Index .*Scan (on|using) "
+            + "(pk_event_registration|event_registration_person_id_idx)";
+
     @Autowired
     private EventRegistrationRepository eventRegistrationRepository;
 
+    @Autowired
+    private DSLContext dslContext;
+
     @Test
     void getEventRegistrationMatrix() {
         var eventRegistrationMatrix = eventRegistrationRepository.getEventRegistrationMatrix(1L);
 
-        assertThat(eventRegistrationMatrix).isNotEmpty().first().satisfies(eventRegistrationRow -> {
+        assertThat(eventRegistrationMatrix.events()).extracting(EventRecord::getTitle)
+            .containsExactly("CIS 2023", "Jugendmeisterschaft 2023");
+        assertThat(eventRegistrationMatrix.rows()).isNotEmpty().first().satisfies(eventRegistrationRow -> {
             assertThat(eventRegistrationRow.lastName()).isEqualTo("Lane");
             assertThat(eventRegistrationRow.firstName()).isEqualTo("Eula");
-            assertThat(eventRegistrationRow.registrations()).hasSize(2);
+            assertThat(eventRegistrationRow.isRegistered(0)).isTrue();
+            assertThat(eventRegistrationRow.isRegistered(1)).isFalse();
+        });
+        assertThat(eventRegistrationMatrix.total(0)).isEqualTo(1);
+        assertThat(eventRegistrationMatrix.total(1)).isZero();
+    }
+
+    @Test
+    void findByRegistrationEmailId() {
+        // Registration email 1 belongs to registration 1 and person 1
+        var eventRegistrations = eventRegistrationRepository.findByRegistrationEmailId(1L);
+
+        assertThat(eventRegistrations).singleElement().satisfies(eventRegistration -> {
+            assertThat(eventRegistration.getEventId()).isEqualTo(1L);
+            assertThat(eventRegistration.getPersonId()).isEqualTo(1L);
+            assertThat(eventRegistration.getRegistered()).isTrue();
+        });
+    }
+
+    @Test
+    @Transactional
+    void upsert_inserts_new_and_updates_existing_registrations() {
+        var updated = createEventRegistration(1L, 1L, 1L, false);
+        var inserted = createEventRegistration(1L, 2L, 1L, true);
+
+        var count = eventRegistrationRepository.upsert(List.of(updated, inserted));
+
+        assertThat(count).isEqualTo(2);
+        assertThat(eventRegistrationRepository.findByRegistrationEmailId(1L))
+            .extracting(EventRegistrationRecord::getEventId, EventRegistrationRecord::getRegistered)
+            .containsExactlyInAnyOrder(tuple(1L, false), tuple(2L, true));
+    }
+
+    @Test
+    void findRegistrationEmailState() {
+        var state = eventRegistrationRepository.findRegistrationEmailState(1L);
+
+        assertThat(state.events()).containsExactly("CIS 2023", "Jugendmeisterschaft 2023");
+        assertThat(state.persons()).containsExactly("Eula Lane");
+        assertThat(state.isRegistered(0, 0)).isTrue();
+        assertThat(state.isRegistered(1, 0)).isFalse();
+    }
+
+    @Test
+    void findRegisteredEventIdsByPerson() {
+        var registeredEventIds = eventRegistrationRepository.findRegisteredEventIdsByPerson(1L, 1L);
+
+        assertThat(registeredEventIds).hasSize(1).allSatisfy((person, eventIds) -> {
+            assertThat(person.getFirstName()).isEqualTo("Eula");
+            assertThat(eventIds).containsExactly(1L);
         });
     }
 
+    @Test
+    void findByRegistrationIdAndEventIdAndPersonId() {
+        assertThat(eventRegistrationRepository.findByRegistrationIdAndEventIdAndPersonId(1L, 1L, 1L))
+            .hasValueSatisfying(eventRegistration -> assertThat(eventRegistration.getRegistered()).isTrue());
+        assertThat(eventRegistrationRepository.findByRegistrationIdAndEventIdAndPersonId(3L, 1L, 1L)).isEmpty();
+    }
+
+    @Test
+    @Transactional
+    void registration_scoped_lookups_use_indexes() {
+        // Event registrations of former years, so the planner prefers an index to a scan
+        var series = generateSeries(1, HISTORY_REGISTRATIONS).as("s", "i");
+        var i = series.field("i", Integer.class);
+        dslContext
+            .insertInto(REGISTRATION, REGISTRATION.ID, REGISTRATION.TITLE, REGISTRATION.YEAR, REGISTRATION.OPEN_FROM,
+                    REGISTRATION.OPEN_UNTIL)
+            .select(select(i.plus(HISTORY_ID_OFFSET).cast(SQLDataType.BIGINT), val("History"), i,
+                    val(LocalDate.of(2000, 1, 1)), val(LocalDate.of(2000, 12, 31)))
+                .from(series))
+            .execute();
+        dslContext
+            .insertInto(EVENT_REGISTRATION, EVENT_REGISTRATION.REGISTRATION_ID, EVENT_REGISTRATION.EVENT_ID,
+                    EVENT_REGISTRATION.PERSON_ID, EVENT_REGISTRATION.REGISTERED)
+            .select(select(REGISTRATION.ID, EVENT.ID, PERSON.ID, val(true)).from(REGISTRATION)
+                .crossJoin(EVENT)
+                .crossJoin(PERSON)
+                .where(REGISTRATION.ID.gt((long) HISTORY_ID_OFFSET)))
+            .execute();
+        dslContext.query("analyze event_registration").execute();
+
+        var byPrimaryKey = explain(repository -> repository.findByRegistrationIdAndEventIdAndPersonId(1L, 1L, 1L));
+        assertThat(byPrimaryKey.plan()).containsPattern(EVENT_REGISTRATION_INDEX_SCAN)
+            .doesNotContain("Seq Scan on event_registration");
+
+        var byRegistrationEmail = explain(repository -> repository.findByRegistrationEmailId(1L));
+        assertThat(byRegistrationEmail.plan()).containsPattern(EVENT_REGISTRATION_INDEX_SCAN)
+            .doesNotContain("Seq Scan on event_registration");
+
+        var byPerson = explain(repository -> repository.findRegisteredEventIdsByPerson(1L, 1L));
+        assertThat(byPerson.plan()).contains("event_registration_person_id_idx")
+            .doesNotContain("Seq Scan on event_registration");
+    }
+
+    /**
+     * Explains the last query the repository executes for the lookup, so the test follows
+     * changes of the repository.
+     */
+    private Explain explain(Consumer<EventRegistrationRepository> lookup) {
+        var queries = new ArrayList<Query>();
+        var repository = new EventRegistrationRepository(dslContext.configuration()
+            .derive(ExecuteListener.onExecuteStart(context -> queries.add(context.query())))
+            .dsl());
+        lookup.accept(repository);
+        return dslContext.explain(queries.getLast());
+    }
+
+    private EventRegistrationRecord createEventRegistration(Long registrationId, Long eventId, Long personId,
+            boolean registered) {
+        var eventRegistrationRecord = new EventRegistrationRecord();
+        eventRegistrationRecord.setRegistrationId(registrationId);
+        eventRegistrationRecord.setEventId(eventId);
+        eventRegistrationRecord.setPersonId(personId);
+        eventRegistrationRecord.setRegistered(registered);
+        return eventRegistrationRecord;
+    }
+
 }
\ No newline at end of file
@@ -1,9 +1,14 @@
 package ch.martinelli.oss.registration.domain;
 
 import ch.martinelli.oss.registration.ui.views.KaribuTest;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
 import static org.assertj.core.api.Assertions.assertThat;
 
 class EventRegistrationServiceTest extends KaribuTest {
@@ -12,10 +17,27 @@ class EventRegistrationServiceTest extends KaribuTest {
     private EventRegistrationService eventRegistrationService;
 
     @Test
-    void createEventRegistrationExcel() {
-        var excelFile = eventRegistrationService.createEventRegistrationExcel(1L);
+    void writeEventRegistrationExcel() throws IOException {
+        var outputStream = new ByteArrayOutputStream();
+
+        eventRegistrationService.writeEventRegistrationExcel(1L, outputStream);
+
+        try (var workbook = new XSSFWorkbook(new ByteArrayInputStream(outputStream.toByteArray()))) {
+            var sheet = workbook.getSheetAt(0);
+            assertThat(sheet.getRow(0).getCell(2).getStringCellValue()).isEqualTo("CIS 2023");
+            assertThat(sheet.getRow(1).getCell(0).getStringCellValue()).isEqualTo("Lane");
+            assertThat(sheet.getRow(1).getCell(2).getStringCellValue()).isEqualTo("X");
+            assertThat(sheet.getColumnWidth(0)).isGreaterThan(256);
+        }
+    }
+
+    @Test
+    void writeEventRegistrationExcel_streams_rows_within_read_only_transaction() throws IOException {
+        var outputStream = new TransactionRecordingOutputStream();
+
+        eventRegistrationService.writeEventRegistrationExcel(1L, outputStream);
 
-        assertThat(excelFile).isNotEmpty();
+        assertThat(outputStream.isWrittenInReadOnlyTransaction()).isTrue();
     }
 
-}
\ No newline at end of file
+}
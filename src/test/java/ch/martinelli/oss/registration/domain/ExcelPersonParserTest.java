@@ -2,12 +2,17 @@ package ch.martinelli.oss.registration.domain;
 
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -577,6 +582,47 @@ class ExcelPersonParserTest {
         assertThat(persons.getFirst().email()).isEqualTo("john@example.com");
     }
 
+    // ========== File Method Tests ==========
+
+    @Test
+    void shouldPassPersonsFromFileToConsumer(@TempDir Path tempDir) throws IOException {
+        // Given
+        var file = tempDir.resolve("persons.xlsx");
+        try (var inputStream = getClass().getResourceAsStream("/upload_partipipants.xlsx")) {
+            assertThat(inputStream).isNotNull();
+            Files.copy(inputStream, file);
+        }
+
+        // When
+        var persons = new ArrayList<ExcelPersonData>();
+        parser.parseExcelFile(file.toFile(), persons::add);
+
+        // Then
+        assertThat(persons).extracting(ExcelPersonData::lastName).containsExactly("Hansen", "Meier");
+    }
+
+    @Test
+    void shouldParseInlineStrings() throws IOException {
+        // Given
+        var workbook = new SXSSFWorkbook();
+        var sheet = workbook.createSheet("Sheet1");
+        createHeaderRow(sheet);
+
+        var row = sheet.createRow(1);
+        row.createCell(0).setCellValue(123);
+        row.createCell(1).setCellValue(" John ");
+        row.createCell(2).setCellValue("Doe");
+        row.createCell(6).setCellValue("john@example.com");
+
+        var bytes = workbookToBytes(workbook);
+
+        // When
+        var persons = parser.parseExcelFile(bytes);
+
+        // Then
+        assertThat(persons).containsExactly(new ExcelPersonData(123, "John", "Doe", "john@example.com"));
+    }
+
     // ========== Helper Methods ==========
 
     private void createHeaderRow(Sheet sheet) {
@@ -0,0 +1,41 @@
+package ch.martinelli.oss.registration.domain;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ExportWriterTest {
+
+    @Test
+    void csvQuotesValuesWithSeparatorsQuotesAndLineBreaks() throws IOException {
+        assertThat(write(ExportFormat.CSV, Arrays.asList("a,b", "say \"hi\"", "x\ny", null, 3)))
+            .isEqualTo("c1,c2,c3,c4,c5\n\"a,b\",\"say \"\"hi\"\"\",\"x\ny\",,3\n");
+    }
+
+    @Test
+    void tsvReplacesTabsAndLineBreaks() throws IOException {
+        assertThat(write(ExportFormat.TSV, Arrays.asList("a\tb", "x\r\ny", "c", true, null)))
+            .isEqualTo("c1\tc2\tc3\tc4\tc5\na b\tx  y\tc\ttrue\t\n");
+    }
+
+    @Test
+    void jsonLinesWritesAnObjectPerRow() throws IOException {
+        assertThat(write(ExportFormat.JSONL, Arrays.asList("a\"b", "x\\y\n", 3, false, null)))
+            .isEqualTo("{\"c1\":\"a\\\"b\",\"c2\":\"x\\\\y\\n\",\"c3\":3,\"c4\":false,\"c5\":null}\n");
+    }
+
+    private static String write(ExportFormat format, List<?> values) throws IOException {
+        var outputStream = new ByteArrayOutputStream();
+        var exportWriter = new ExportWriter(format, List.of("c1", "c2", "c3", "c4", "c5"), outputStream);
+        exportWriter.writeRow(values);
+        exportWriter.flush();
+        return outputStream.toString(StandardCharsets.UTF_8);
+    }
+
+}
@@ -0,0 +1,93 @@
+package ch.martinelli.oss.registration.domain;
+
+import ch.martinelli.oss.registration.TestcontainersConfiguration;
+import ch.martinelli.oss.registration.db.tables.records.MailOutboxRecord;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+import static ch.martinelli.oss.registration.db.enums.MailOutboxKind.INVITATION;
+import static ch.martinelli.oss.registration.db.enums.MailOutboxStatus.FAILED;
+import static ch.martinelli.oss.registration.db.enums.MailOutboxStatus.SENDING;
+import static ch.martinelli.oss.registration.db.tables.MailOutbox.MAIL_OUTBOX;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Import(TestcontainersConfiguration.class)
+@SpringBootTest
+@Transactional
+class MailOutboxRepositoryTest {
+
+    @Autowired
+    private MailOutboxRepository mailOutboxRepository;
+
+    @Autowired
+    private RegistrationEmailRepository registrationEmailRepository;
+
+    @Test
+    void enqueue_unsent_skips_emails_already_queued() {
+        // Registration 3 has three unsent registration emails
+        assertThat(mailOutboxRepository.enqueueUnsent(3L, "jugi@tverlach.ch")).isEqualTo(3);
+        assertThat(mailOutboxRepository.enqueueUnsent(3L, "jugi@tverlach.ch")).isZero();
+    }
+
+    @Test
+    void claim_leases_due_messages() {
+        mailOutboxRepository.enqueueUnsent(3L, "jugi@tverlach.ch");
+        var leaseUntil = LocalDateTime.now().plusMinutes(5).truncatedTo(ChronoUnit.SECONDS);
+
+        var firstBatch = mailOutboxRepository.claim(2, leaseUntil);
+        var secondBatch = mailOutboxRepository.claim(2, leaseUntil);
+
+        assertThat(firstBatch).hasSize(2).allSatisfy(message -> {
+            assertThat(message.getStatus()).isEqualTo(SENDING);
+            assertThat(message.getAttempts()).isEqualTo(1);
+            assertThat(message.getNextAttemptAt()).isEqualTo(leaseUntil);
+        });
+        assertThat(secondBatch).hasSize(1);
+        assertThat(mailOutboxRepository.claim(2, leaseUntil)).isEmpty();
+    }
+
+    @Test
+    void claim_takes_over_messages_with_expired_lease() {
+        mailOutboxRepository.enqueueUnsent(3L, "jugi@tverlach.ch");
+        var claimed = mailOutboxRepository.claim(10, LocalDateTime.now().minusSeconds(1));
+
+        var reclaimed = mailOutboxRepository.claim(10, LocalDateTime.now().plusMinutes(5));
+
+        assertThat(reclaimed).extracting(MailOutboxRecord::getId)
+            .containsExactlyInAnyOrderElementsOf(claimed.stream().map(MailOutboxRecord::getId).toList());
+        assertThat(reclaimed).allSatisfy(message -> assertThat(message.getAttempts()).isEqualTo(2));
+    }
+
+    @Test
+    void failed_messages_are_not_claimed_and_can_be_queued_again() {
+        mailOutboxRepository.enqueueUnsent(3L, "jugi@tverlach.ch");
+        for (var message : mailOutboxRepository.claim(10, LocalDateTime.now().plusMinutes(5))) {
+            mailOutboxRepository.markFailed(message.getId(), "550 Mailbox unavailable");
+        }
+
+        assertThat(mailOutboxRepository.claim(10, LocalDateTime.now().plusMinutes(5))).isEmpty();
+        assertThat(mailOutboxRepository
+            .findAll(MAIL_OUTBOX.REGISTRATION_EMAIL_ID.eq(3L).and(MAIL_OUTBOX.KIND.eq(INVITATION)))).singleElement()
+            .satisfies(message -> {
+                assertThat(message.getStatus()).isEqualTo(FAILED);
+                assertThat(message.getLastError()).isEqualTo("550 Mailbox unavailable");
+            });
+        assertThat(mailOutboxRepository.enqueueUnsent(3L, "jugi@tverlach.ch")).isEqualTo(3);
+    }
+
+    @Test
+    void mailing_progress_counts_the_latest_message_of_each_invitation() {
+        mailOutboxRepository.enqueueUnsent(3L, "jugi@tverlach.ch");
+        var batch = mailOutboxRepository.claim(2, LocalDateTime.now().plusMinutes(5));
+        mailOutboxRepository.markFailed(batch.getFirst().getId(), "550 Mailbox unavailable");
+
+        assertThat(registrationEmailRepository.getMailingProgress(3L)).isEqualTo(new MailingProgress(3, 0, 2, 1));
+    }
+
+}
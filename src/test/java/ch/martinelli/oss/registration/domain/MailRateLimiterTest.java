@@ -0,0 +1,53 @@
+package ch.martinelli.oss.registration.domain;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MailRateLimiterTest {
+
+    @Test
+    void acquire_is_bounded_by_the_smallest_bucket() throws InterruptedException {
+        var mailRateLimiter = new MailRateLimiter(5, 3);
+
+        assertThat(mailRateLimiter.acquire(10)).isEqualTo(3);
+    }
+
+    @Test
+    void acquire_takes_at_most_the_requested_tokens() throws InterruptedException {
+        var mailRateLimiter = new MailRateLimiter(60, 1000);
+
+        assertThat(mailRateLimiter.acquire(10)).isEqualTo(10);
+        assertThat(mailRateLimiter.acquire(100)).isEqualTo(50);
+    }
+
+    @Test
+    void refunded_tokens_can_be_acquired_again() throws InterruptedException {
+        var mailRateLimiter = new MailRateLimiter(10, 0);
+
+        assertThat(mailRateLimiter.acquire(10)).isEqualTo(10);
+        mailRateLimiter.refund(4);
+
+        assertThat(mailRateLimiter.acquire(10)).isEqualTo(4);
+    }
+
+    @Test
+    void acquire_waits_for_a_refill() throws InterruptedException {
+        // One token per 100 ms
+        var mailRateLimiter = new MailRateLimiter(600, 0);
+        mailRateLimiter.acquire(600);
+
+        var start = System.nanoTime();
+        assertThat(mailRateLimiter.acquire(1)).isEqualTo(1);
+
+        assertThat(System.nanoTime() - start).isGreaterThan(50_000_000L);
+    }
+
+    @Test
+    void zero_disables_the_limit() throws InterruptedException {
+        var mailRateLimiter = new MailRateLimiter(0, 0);
+
+        assertThat(mailRateLimiter.acquire(10_000)).isEqualTo(10_000);
+    }
+
+}
@@ -0,0 +1,68 @@
+package ch.martinelli.oss.registration.domain;
+
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.internet.InternetAddress;
+import org.eclipse.angus.mail.smtp.SMTPAddressFailedException;
+import org.eclipse.angus.mail.smtp.SMTPSendFailedException;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MailRetryPolicyTest {
+
+    private final MailRetryPolicy mailRetryPolicy = new MailRetryPolicy(5, Duration.ofMinutes(1),
+            Duration.ofMinutes(10));
+
+    @Test
+    void permanent_smtp_reply_is_not_retried() throws Exception {
+        var rejected = new SMTPAddressFailedException(new InternetAddress("nobody@example.com"), "RCPT TO", 550,
+                "550 5.1.1 Mailbox unavailable");
+        var error = new SendFailedException("Invalid Addresses", rejected);
+
+        assertThat(mailRetryPolicy.nextAttemptAt(1, error)).isEmpty();
+    }
+
+    @Test
+    void transient_smtp_reply_is_retried() {
+        var error = new SMTPSendFailedException("DATA", 451, "451 4.3.0 Try again later", null, null, null, null);
+
+        assertThat(mailRetryPolicy.nextAttemptAt(1, error)).hasValueSatisfying(
+                nextAttemptAt -> assertThat(nextAttemptAt).isAfter(LocalDateTime.now().plusSeconds(29)));
+    }
+
+    @Test
+    void connection_problem_is_retried() {
+        var error = new MessagingException("Could not connect to SMTP host", new IOException("Connection refused"));
+
+        assertThat(mailRetryPolicy.nextAttemptAt(1, error)).isPresent();
+    }
+
+    @Test
+    void missing_email_text_is_not_retried() {
+        var error = new IllegalArgumentException("Email text is missing for registration 1");
+
+        assertThat(mailRetryPolicy.nextAttemptAt(1, error)).isEmpty();
+    }
+
+    @Test
+    void gives_up_after_max_attempts() {
+        var error = new MessagingException("Could not connect to SMTP host");
+
+        assertThat(mailRetryPolicy.nextAttemptAt(4, error)).isPresent();
+        assertThat(mailRetryPolicy.nextAttemptAt(5, error)).isEmpty();
+    }
+
+    @Test
+    void backoff_grows_exponentially_with_jitter_up_to_the_maximum() {
+        assertThat(mailRetryPolicy.backoff(1)).isBetween(Duration.ofSeconds(30), Duration.ofMinutes(1));
+        assertThat(mailRetryPolicy.backoff(2)).isBetween(Duration.ofMinutes(1), Duration.ofMinutes(2));
+        assertThat(mailRetryPolicy.backoff(3)).isBetween(Duration.ofMinutes(2), Duration.ofMinutes(4));
+        assertThat(mailRetryPolicy.backoff(10)).isBetween(Duration.ofMinutes(5), Duration.ofMinutes(10));
+    }
+
+}
@@ -0,0 +1,47 @@
+package ch.martinelli.oss.registration.domain;
+
+import ch.martinelli.oss.registration.domain.MailingProgressEvent.InvitationStatus;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static ch.martinelli.oss.registration.db.enums.MailOutboxStatus.SENT;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MailingProgressBroadcasterTest {
+
+    private final MailingProgressBroadcaster mailingProgressBroadcaster = new MailingProgressBroadcaster();
+
+    @Test
+    void registered_listeners_receive_progress() {
+        var events = new ArrayList<MailingProgressEvent>();
+        var registration = mailingProgressBroadcaster.register(events::add);
+        var invitations = List.of(new InvitationStatus(1L, SENT, null));
+
+        mailingProgressBroadcaster.publish(1L, new MailingProgress(10, 5, 5, 0), 5, System.nanoTime() - 1_000_000_000L,
+                invitations);
+        registration.run();
+        mailingProgressBroadcaster.publish(1L, new MailingProgress(10, 10, 0, 0), 5, System.nanoTime(), List.of());
+
+        assertThat(events).singleElement().satisfies(event -> {
+            assertThat(event.registrationId()).isEqualTo(1L);
+            assertThat(event.progress().sent()).isEqualTo(5);
+            assertThat(event.messagesPerSecond()).isBetween(1.0, 5.0);
+            assertThat(event.invitations()).isEqualTo(invitations);
+        });
+    }
+
+    @Test
+    void rate_is_measured_from_the_first_batch_of_a_running_mailing() {
+        var events = new ArrayList<MailingProgressEvent>();
+        mailingProgressBroadcaster.register(events::add);
+        var startedAt = System.nanoTime() - 2_000_000_000L;
+
+        mailingProgressBroadcaster.publish(1L, new MailingProgress(10, 2, 8, 0), 2, startedAt, List.of());
+        mailingProgressBroadcaster.publish(1L, new MailingProgress(10, 4, 6, 0), 2, System.nanoTime(), List.of());
+
+        assertThat(events.getLast().messagesPerSecond()).isBetween(1.0, 2.0);
+    }
+
+}
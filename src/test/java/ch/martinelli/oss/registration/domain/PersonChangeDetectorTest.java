@@ -9,7 +9,11 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.context.annotation.Import;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Objects;
 
 import static ch.martinelli.oss.registration.db.tables.EventRegistration.EVENT_REGISTRATION;
 import static ch.martinelli.oss.registration.db.tables.Person.PERSON;
@@ -288,4 +292,86 @@ class PersonChangeDetectorTest {
         assertThat(deactivateChange.getExistingRecord().getMemberId()).isEqualTo(456);
     }
 
+    @Test
+    void shouldMatchSameRecordsAsLinearScan() {
+        // Given - persons with and without member ID
+        for (var i = 0; i < 300; i++) {
+            dslContext.insertInto(PERSON)
+                .set(PERSON.MEMBER_ID, i % 3 == 0 ? null : 1000 + i)
+                .set(PERSON.FIRST_NAME, "First" + i)
+                .set(PERSON.LAST_NAME, "Last" + i)
+                .set(PERSON.EMAIL, "person" + i + "@example.com")
+                .set(PERSON.ACTIVE, i % 10 != 0)
+                .execute();
+        }
+
+        // Excel rows matching by member ID, by name, not at all or missing
+        var excelData = new ArrayList<ExcelPersonData>();
+        for (var i = 0; i < 400; i++) {
+            switch (i % 4) {
+                case 0 ->
+                    excelData.add(new ExcelPersonData(1000 + i, "First" + i, "Last" + i, "new" + i + "@example.com"));
+                case 1 -> excelData
+                    .add(new ExcelPersonData(5000 + i, "First" + i, "Last" + i, "person" + i + "@example.com"));
+                case 2 -> excelData
+                    .add(new ExcelPersonData(1000 + i, "Other" + i, "Last" + i, "person" + i + "@example.com"));
+                default -> {
+                    // Missing in Excel
+                }
+            }
+        }
+
+        // When
+        var changes = detector.detectChanges(excelData);
+
+        // Then - each change refers to the record a linear scan finds
+        var allPersons = dslContext.selectFrom(PERSON).fetch();
+        var matchedPersonIds = new HashSet<Long>();
+        var expectedMatches = new HashMap<ExcelPersonData, Long>();
+        for (var data : excelData) {
+            var match = allPersons.stream()
+                .filter(p -> data.memberId() != null && Objects.equals(p.getMemberId(), data.memberId()))
+                .findFirst()
+                .or(() -> allPersons.stream()
+                    .filter(p -> Objects.equals(p.getFirstName(), data.firstName())
+                            && Objects.equals(p.getLastName(), data.lastName()))
+                    .findFirst());
+            match.ifPresent(p -> {
+                matchedPersonIds.add(p.getId());
+                expectedMatches.put(data, p.getId());
+            });
+        }
+
+        for (var change : changes) {
+            switch (change.getType()) {
+                case NEW -> assertThat(expectedMatches).doesNotContainKey(change.getNewData());
+                case UPDATE ->
+                    assertThat(expectedMatches).containsEntry(change.getNewData(), change.getExistingRecord().getId());
+                case DEACTIVATE -> assertThat(matchedPersonIds).doesNotContain(change.getExistingRecord().getId());
+                default -> throw new AssertionError("Unexpected change " + change.getType());
+            }
+        }
+        assertThat(changes).filteredOn(change -> change.getType() == PersonChange.ChangeType.DEACTIVATE)
+            .hasSize((int) allPersons.stream()
+                .filter(p -> p.getActive() && !matchedPersonIds.contains(p.getId()))
+                .count());
+        assertThat(changes).filteredOn(change -> change.getType() == PersonChange.ChangeType.NEW)
+            .hasSize((int) excelData.stream().filter(data -> !expectedMatches.containsKey(data)).count());
+    }
+
+    @Test
+    void shouldKeepExcelOrderWhenDetectingInParallel() {
+        // Given - enough rows to be detected in parallel
+        var excelData = new ArrayList<ExcelPersonData>();
+        for (var i = 0; i < 5000; i++) {
+            excelData.add(new ExcelPersonData(i, "First" + i, "Last" + i, "person" + i + "@example.com"));
+        }
+
+        // When
+        var changes = detector.detectChanges(excelData);
+
+        // Then
+        assertThat(changes).extracting(PersonChange::getNewData).containsExactlyElementsOf(excelData);
+    }
+
 }
@@ -0,0 +1,83 @@
+package ch.martinelli.oss.registration.domain;
+
+import ch.martinelli.oss.registration.TestcontainersConfiguration;
+import ch.martinelli.oss.registration.db.tables.records.PersonRecord;
+import org.jooq.DSLContext;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static ch.martinelli.oss.registration.db.tables.Person.PERSON;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Import(TestcontainersConfiguration.class)
+@SpringBootTest
+@Transactional
+class PersonImportServiceTest {
+
+    @Autowired
+    private DSLContext dslContext;
+
+    @Autowired
+    private PersonImportService personImportService;
+
+    @Test
+    void applyChanges() {
+        // Given
+        var updatedPerson = insertPerson(1001, "John", "Doe");
+        var deactivatedPerson = insertPerson(1002, "Jane", "Smith");
+        var rejectedPerson = insertPerson(1003, "Bob", "Wilson");
+
+        var changes = new ArrayList<PersonChange>();
+        for (var i = 0; i < 1500; i++) {
+            changes.add(new PersonChange(PersonChange.ChangeType.NEW, null,
+                    new ExcelPersonData(2000 + i, "First" + i, "Import", "person" + i + "@example.com"), Map.of()));
+        }
+        changes.add(new PersonChange(PersonChange.ChangeType.UPDATE, updatedPerson,
+                new ExcelPersonData(1001, "John", "Doe", "new@example.com"), Map.of()));
+        changes.add(new PersonChange(PersonChange.ChangeType.DEACTIVATE, deactivatedPerson, null, Map.of()));
+        var rejectedChange = new PersonChange(PersonChange.ChangeType.DEACTIVATE, rejectedPerson, null, Map.of());
+        rejectedChange.setAccepted(false);
+        changes.add(rejectedChange);
+
+        // When
+        var result = personImportService.applyChanges(changes);
+
+        // Then
+        assertThat(result).isEqualTo(new PersonImportResult(1500, 1, 1));
+        assertThat(dslContext.fetchCount(PERSON, PERSON.LAST_NAME.eq("Import").and(PERSON.ACTIVE))).isEqualTo(1500);
+        assertThat(dslContext.fetchValue(PERSON.EMAIL, PERSON.ID.eq(updatedPerson.getId())))
+            .isEqualTo("new@example.com");
+        assertThat(dslContext.fetchValue(PERSON.ACTIVE, PERSON.ID.eq(deactivatedPerson.getId()))).isFalse();
+        assertThat(dslContext.fetchValue(PERSON.ACTIVE, PERSON.ID.eq(rejectedPerson.getId()))).isTrue();
+    }
+
+    @Test
+    void applyChangesWithoutAcceptedChanges() {
+        var change = new PersonChange(PersonChange.ChangeType.NEW, null,
+                new ExcelPersonData(3000, "Rejected", "Person", null), Map.of());
+        change.setAccepted(false);
+
+        var result = personImportService.applyChanges(List.of(change));
+
+        assertThat(result.total()).isZero();
+    }
+
+    private PersonRecord insertPerson(int memberId, String firstName, String lastName) {
+        return dslContext.insertInto(PERSON)
+            .set(PERSON.MEMBER_ID, memberId)
+            .set(PERSON.FIRST_NAME, firstName)
+            .set(PERSON.LAST_NAME, lastName)
+            .set(PERSON.EMAIL, "old@example.com")
+            .set(PERSON.ACTIVE, true)
+            .returning()
+            .fetchOne();
+    }
+
+}
@@ -0,0 +1,69 @@
+package ch.martinelli.oss.registration.domain;
+
+import ch.martinelli.oss.registration.TestcontainersConfiguration;
+import ch.martinelli.oss.registration.db.tables.records.EventRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Import(TestcontainersConfiguration.class)
+@SpringBootTest
+class RegistrationCacheTest {
+
+    @Autowired
+    private RegistrationRepository registrationRepository;
+
+    private final CacheMeters cacheMeters = new CacheMeters();
+
+    private RegistrationCache registrationCache;
+
+    @BeforeEach
+    void setUp() {
+        registrationCache = new RegistrationCache(registrationRepository, cacheMeters.registry(), 100,
+                Duration.ofMinutes(1));
+    }
+
+    @Test
+    void registration_is_loaded_once_until_evicted() {
+        assertThat(registrationCache.findRegistration(1L))
+            .hasValueSatisfying(registration -> assertThat(registration.getTitle())
+                .isEqualTo(registrationRepository.findById(1L).orElseThrow().getTitle()));
+        registrationCache.findRegistration(1L);
+
+        assertThat(cacheMeters.misses("registrations")).isEqualTo(1);
+        assertThat(cacheMeters.hits("registrations")).isEqualTo(1);
+
+        registrationCache.evict(1L);
+        registrationCache.findRegistration(1L);
+
+        assertThat(cacheMeters.misses("registrations")).isEqualTo(2);
+    }
+
+    @Test
+    void missing_registration_is_empty() {
+        assertThat(registrationCache.findRegistration(-1L)).isEmpty();
+    }
+
+    @Test
+    void events_are_evicted_for_all_registrations() {
+        assertThat(registrationCache.findEvents(1L)).extracting(EventRecord::getTitle)
+            .containsExactly("CIS 2023", "Jugendmeisterschaft 2023");
+        registrationCache.findEvents(3L);
+        registrationCache.findEvents(1L);
+
+        assertThat(cacheMeters.hits("registration-events")).isEqualTo(1);
+
+        registrationCache.evictEvents();
+        registrationCache.findEvents(1L);
+        registrationCache.findEvents(3L);
+
+        assertThat(cacheMeters.misses("registration-events")).isEqualTo(4);
+    }
+
+}
@@ -0,0 +1,63 @@
+package ch.martinelli.oss.registration.domain;
+
+import ch.martinelli.oss.registration.ui.views.KaribuTest;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RegistrationExportServiceTest extends KaribuTest {
+
+    @Autowired
+    private RegistrationExportService registrationExportService;
+
+    @Test
+    void writeEventRegistrationsAsCsv() throws IOException {
+        var outputStream = new ByteArrayOutputStream();
+
+        registrationExportService.writeEventRegistrations(1L, ExportFormat.CSV, outputStream);
+
+        var lines = outputStream.toString(StandardCharsets.UTF_8).lines().toList();
+        assertThat(lines.getFirst()).startsWith("last_name,first_name,CIS 2023");
+        assertThat(lines).anyMatch(line -> line.startsWith("Lane,Eula,true"));
+    }
+
+    @Test
+    void writeEventRegistrationsAsJsonLines() throws IOException {
+        var outputStream = new ByteArrayOutputStream();
+
+        registrationExportService.writeEventRegistrations(1L, ExportFormat.JSONL, outputStream);
+
+        assertThat(outputStream.toString(StandardCharsets.UTF_8).lines())
+            .anyMatch(line -> line.startsWith("{\"last_name\":\"Lane\",\"first_name\":\"Eula\",\"CIS 2023\":true"));
+    }
+
+    @Test
+    void writeRegistrationEmailsAsTsv() throws IOException {
+        var outputStream = new ByteArrayOutputStream();
+
+        registrationExportService.writeRegistrationEmails(1L, ExportFormat.TSV, outputStream);
+
+        var lines = outputStream.toString(StandardCharsets.UTF_8).lines().toList();
+        assertThat(lines.getFirst())
+            .isEqualTo("email\tsent_at\tregistered_at\tmail_status\tmail_attempts\tmail_last_error");
+        assertThat(lines).anyMatch(line -> line.startsWith("jordan.miccinesi@duod.gy\t2023-01-01T11:00"));
+    }
+
+    @Test
+    void exports_stream_rows_within_read_only_transaction() throws IOException {
+        var eventRegistrations = new TransactionRecordingOutputStream();
+        var registrationEmails = new TransactionRecordingOutputStream();
+
+        registrationExportService.writeEventRegistrations(1L, ExportFormat.CSV, eventRegistrations);
+        registrationExportService.writeRegistrationEmails(1L, ExportFormat.CSV, registrationEmails);
+
+        assertThat(eventRegistrations.isWrittenInReadOnlyTransaction()).isTrue();
+        assertThat(registrationEmails.isWrittenInReadOnlyTransaction()).isTrue();
+    }
+
+}
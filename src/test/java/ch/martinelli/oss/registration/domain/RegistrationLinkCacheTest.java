@@ -0,0 +1,100 @@
+package ch.martinelli.oss.registration.domain;
+
+import ch.martinelli.oss.registration.TestcontainersConfiguration;
+import ch.martinelli.oss.registration.db.tables.records.RegistrationEmailRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Import(TestcontainersConfiguration.class)
+@SpringBootTest
+class RegistrationLinkCacheTest {
+
+    private static final String LINK = "550e8400e29b41d4a716446655440000";
+
+    @Autowired
+    private RegistrationEmailRepository registrationEmailRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private final CacheMeters cacheMeters = new CacheMeters();
+
+    private RegistrationLinkCache registrationLinkCache;
+
+    @BeforeEach
+    void setUp() {
+        registrationLinkCache = new RegistrationLinkCache(registrationEmailRepository, cacheMeters.registry(), 100,
+                Duration.ofMinutes(1), Duration.ofMinutes(1));
+    }
+
+    @Test
+    void known_link_is_resolved_once() {
+        assertThat(registrationLinkCache.resolve(LINK)).contains(new RegistrationEmailLink(1L, 1L));
+        assertThat(registrationLinkCache.resolve(LINK)).contains(new RegistrationEmailLink(1L, 1L));
+
+        assertThat(cacheMeters.misses("registration-links")).isEqualTo(1);
+        assertThat(cacheMeters.hits("registration-links")).isEqualTo(1);
+    }
+
+    @Test
+    void unknown_links_are_rejected_by_the_filter() {
+        for (var i = 0; i < 100; i++) {
+            assertThat(registrationLinkCache.resolve("unknown" + i)).isEmpty();
+        }
+
+        // Only false positives of the filter are looked up
+        assertThat(cacheMeters.count("registration.links.rejected")).isGreaterThan(90);
+    }
+
+    @Test
+    void evicted_registration_email_is_resolved_again() {
+        registrationLinkCache.resolve(LINK);
+
+        registrationLinkCache.evictRegistrationEmail(1L);
+        registrationLinkCache.resolve(LINK);
+
+        assertThat(cacheMeters.misses("registration-links")).isEqualTo(2);
+    }
+
+    @Test
+    void registration_email_resolved_before_commit_is_evicted_after_commit() {
+        transactionTemplate.executeWithoutResult(status -> {
+            registrationLinkCache.evictRegistrationEmail(1L);
+
+            // A concurrent request resolves the link before the delete is committed
+            registrationLinkCache.resolve(LINK);
+        });
+        registrationLinkCache.resolve(LINK);
+
+        assertThat(cacheMeters.misses("registration-links")).isEqualTo(2);
+    }
+
+    @Test
+    void created_link_is_resolved_after_rebuild() {
+        assertThat(registrationLinkCache.resolve("createdlink")).isEmpty();
+
+        var registrationEmail = new RegistrationEmailRecord();
+        registrationEmail.setRegistrationId(3L);
+        registrationEmail.setEmail("created@example.com");
+        registrationEmail.setLink("createdlink");
+        registrationEmailRepository.save(registrationEmail);
+        try {
+            registrationLinkCache.linksCreated();
+
+            assertThat(registrationLinkCache.resolve("createdlink"))
+                .contains(new RegistrationEmailLink(registrationEmail.getId(), 3L));
+        }
+        finally {
+            registrationEmailRepository.deleteById(registrationEmail.getId());
+        }
+    }
+
+}
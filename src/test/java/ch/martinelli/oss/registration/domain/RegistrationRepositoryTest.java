@@ -0,0 +1,71 @@
+package ch.martinelli.oss.registration.domain;
+
+import ch.martinelli.oss.registration.TestcontainersConfiguration;
+import ch.martinelli.oss.registration.db.tables.records.RegistrationRecord;
+import ch.martinelli.oss.registration.db.tables.records.RegistrationViewRecord;
+import org.jooq.DSLContext;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import static ch.martinelli.oss.registration.db.tables.RegistrationEmail.REGISTRATION_EMAIL;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Import(TestcontainersConfiguration.class)
+@SpringBootTest
+@Transactional
+class RegistrationRepositoryTest {
+
+    @Autowired
+    private RegistrationRepository registrationRepository;
+
+    @Autowired
+    private DSLContext dslContext;
+
+    @Test
+    void email_counts_follow_inserts_updates_and_deletes() {
+        // Registration 3 has three unsent registration emails
+        assertThat(registrationRepository.findByIdFromView(3L)).hasValueSatisfying(registration -> {
+            assertThat(registration.getEmailCreatedCount()).isEqualTo(3);
+            assertThat(registration.getEmailSentCount()).isZero();
+        });
+
+        dslContext.update(REGISTRATION_EMAIL)
+            .set(REGISTRATION_EMAIL.SENT_AT, LocalDateTime.now())
+            .where(REGISTRATION_EMAIL.REGISTRATION_ID.eq(3L))
+            .and(REGISTRATION_EMAIL.ID.in(3L, 4L))
+            .execute();
+        dslContext.deleteFrom(REGISTRATION_EMAIL).where(REGISTRATION_EMAIL.ID.eq(4L)).execute();
+        dslContext
+            .insertInto(REGISTRATION_EMAIL, REGISTRATION_EMAIL.REGISTRATION_ID, REGISTRATION_EMAIL.EMAIL,
+                    REGISTRATION_EMAIL.LINK)
+            .values(3L, "new@test.com", "newlink")
+            .values(3L, "other@test.com", "otherlink")
+            .execute();
+
+        assertThat(registrationRepository.findByIdFromView(3L)).hasValueSatisfying(registration -> {
+            assertThat(registration.getEmailCreatedCount()).isEqualTo(4);
+            assertThat(registration.getEmailSentCount()).isEqualTo(1);
+        });
+    }
+
+    @Test
+    void registration_without_emails_has_zero_counts() {
+        var registration = new RegistrationRecord();
+        registration.setTitle("Without emails");
+        registration.setYear(2025);
+        registration.setOpenFrom(LocalDate.of(2025, 1, 1));
+        registration.setOpenUntil(LocalDate.of(2025, 2, 28));
+        registrationRepository.save(registration);
+
+        assertThat(registrationRepository.findByIdFromView(registration.getId()))
+            .map(RegistrationViewRecord::getEmailCreatedCount)
+            .hasValue(0L);
+    }
+
+}
@@ -1,7 +1,13 @@
 package ch.martinelli.oss.registration.domain;
 
 import ch.martinelli.oss.registration.TestcontainersConfiguration;
+import ch.martinelli.oss.registration.db.enums.MailOutboxKind;
+import ch.martinelli.oss.registration.db.enums.MailOutboxStatus;
+import ch.martinelli.oss.registration.db.tables.records.EventRecord;
 import ch.martinelli.oss.registration.db.tables.records.EventRegistrationRecord;
+import ch.martinelli.oss.registration.db.tables.records.MailOutboxRecord;
+import ch.martinelli.oss.registration.db.tables.records.PersonRecord;
+import ch.martinelli.oss.registration.db.tables.records.RegistrationEmailRecord;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -10,12 +16,17 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.context.annotation.Import;
 import org.springframework.test.context.DynamicPropertyRegistry;
 import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.annotation.Transactional;
 import org.testcontainers.junit.jupiter.Container;
 import skydrinker.testcontainers.mailcatcher.MailCatcherContainer;
 
 import java.util.Set;
 
+import static ch.martinelli.oss.registration.db.tables.MailOutbox.MAIL_OUTBOX;
+import static ch.martinelli.oss.registration.db.tables.RegistrationEmail.REGISTRATION_EMAIL;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.hamcrest.Matchers.greaterThan;
 
 @Import(TestcontainersConfiguration.class)
 @SpringBootTest
@@ -27,12 +38,24 @@ class RegistrationServiceTest {
     @Autowired
     private RegistrationService registrationService;
 
+    @Autowired
+    private RegistrationRepository registrationRepository;
+
     @Autowired
     private RegistrationEmailRepository registrationEmailRepository;
 
     @Autowired
     private EventRegistrationRepository eventRegistrationRepository;
 
+    @Autowired
+    private MailOutboxRepository mailOutboxRepository;
+
+    @Autowired
+    private MailOutboxWorker mailOutboxWorker;
+
+    @Autowired
+    private RegistrationCache registrationCache;
+
     @DynamicPropertySource
     static void dynamicProperties(DynamicPropertyRegistry registry) {
         mailcatcherContainer.start();
@@ -74,12 +97,11 @@ class RegistrationServiceTest {
 
         // Then: Confirmation email should be sent
         // Verify email content
-        var emails = mailcatcherContainer.getAllEmails();
-        assertThat(emails).hasSizeGreaterThanOrEqualTo(1).anySatisfy(email -> {
+        await().untilAsserted(() -> assertThat(mailcatcherContainer.getAllEmails()).anySatisfy(email -> {
             assertThat(email.getRecipients()).contains("<barry.rodriquez@zun.mm>");
             assertThat(email.getSubject()).isEqualTo("Registration Confirmed");
             assertThat(email.getPlainTextBody()).contains("Thank you!");
-        });
+        }));
 
         // Verify registered_at timestamp is set
         var registrationEmail = registrationEmailRepository.findById(registrationEmailId).orElseThrow();
@@ -100,8 +122,9 @@ class RegistrationServiceTest {
 
         // First registration
         registrationService.register(registrationEmailId, initialRegistrations);
-        var emailsAfterFirst = mailcatcherContainer.getAllEmails();
-        var firstEmailCount = emailsAfterFirst.size();
+        await().untilAsserted(() -> assertThat(mailcatcherContainer.getAllEmails())
+            .anySatisfy(email -> assertThat(email.getRecipients()).contains("<eugene.selvi@test.com>")));
+        var firstEmailCount = mailcatcherContainer.getAllEmails().size();
 
         // When: Update registration (second time)
         var updatedRegistrations = Set.of(createEventRegistration(registrationId, event4Id, personId, false),
@@ -110,8 +133,8 @@ class RegistrationServiceTest {
         registrationService.register(registrationEmailId, updatedRegistrations);
 
         // Then: Update confirmation email should be sent
+        await().until(() -> mailcatcherContainer.getAllEmails().size(), greaterThan(firstEmailCount));
         var allEmails = mailcatcherContainer.getAllEmails();
-        assertThat(allEmails).hasSizeGreaterThan(firstEmailCount);
 
         // Find the update confirmation email (should be the most recent one)
         var updateEmail = allEmails.get(allEmails.size() - 1);
@@ -148,8 +171,7 @@ class RegistrationServiceTest {
         registrationService.register(registrationEmailId, eventRegistrations);
 
         // Then: Check email with all placeholders replaced
-        var emails = mailcatcherContainer.getAllEmails();
-        assertThat(emails).hasSizeGreaterThanOrEqualTo(1).anySatisfy(email -> {
+        await().untilAsserted(() -> assertThat(mailcatcherContainer.getAllEmails()).anySatisfy(email -> {
             assertThat(email.getSubject()).isEqualTo("Registration Confirmed");
             var body = email.getPlainTextBody();
 
@@ -171,7 +193,7 @@ class RegistrationServiceTest {
                 .doesNotContain("%OPEN_FROM%")
                 .doesNotContain("%OPEN_UNTIL%")
                 .doesNotContain("%REMARKS%");
-        });
+        }));
     }
 
     @Test
@@ -194,6 +216,138 @@ class RegistrationServiceTest {
         assertThat(registrationEmail.getRegisteredAt()).isNull();
     }
 
+    @Test
+    @Transactional
+    void register_queues_confirmation_in_the_registration_transaction() {
+        // Given: Registration email 3 (Barry Rodriquez) of registration 3, change event 4
+        var registrationEmailId = 3L;
+        var firstRegistration = registrationEmailRepository.findById(registrationEmailId)
+            .orElseThrow()
+            .getRegisteredAt() == null;
+        var registered = eventRegistrationRepository.findByRegistrationIdAndEventIdAndPersonId(3L, 4L, 2L)
+            .map(EventRegistrationRecord::getRegistered)
+            .orElse(false);
+        var confirmations = MAIL_OUTBOX.REGISTRATION_EMAIL_ID.eq(registrationEmailId)
+            .and(MAIL_OUTBOX.KIND.eq(MailOutboxKind.CONFIRMATION));
+        var queuedBefore = mailOutboxRepository.findAll(confirmations).stream().map(MailOutboxRecord::getId).toList();
+
+        // When: Register
+        registrationService.register(registrationEmailId, Set.of(createEventRegistration(3L, 4L, 2L, !registered)));
+
+        // Then: The confirmation is queued with the registration, it is rendered when it
+        // is sent after the commit
+        assertThat(mailOutboxRepository.findAll(confirmations.and(MAIL_OUTBOX.ID.notIn(queuedBefore)))).singleElement()
+            .satisfies(confirmation -> {
+                assertThat(confirmation.getStatus()).isEqualTo(MailOutboxStatus.PENDING);
+                assertThat(confirmation.getFirstRegistration()).isEqualTo(firstRegistration);
+            });
+    }
+
+    @Test
+    void confirmation_without_template_is_marked_failed() {
+        // Given: Registration 2 without confirmation template and a registration email of
+        // it
+        var registration = registrationRepository.findById(2L).orElseThrow();
+        var text = registration.getConfirmationEmailTextNew();
+        registration.setConfirmationEmailTextNew(null);
+        registrationRepository.save(registration);
+        registrationCache.evict(2L);
+        var registrationEmail = new RegistrationEmailRecord();
+        registrationEmail.setRegistrationId(2L);
+        registrationEmail.setEmail("no.template@example.com");
+        registrationEmail.setLink("notemplatelink");
+        registrationEmailRepository.save(registrationEmail);
+        try {
+            // When: The confirmation is queued
+            mailOutboxRepository.enqueueConfirmation(registrationEmail.getId(), true);
+            mailOutboxWorker.wakeUp();
+
+            // Then: It is marked as failed, not as sent
+            await().untilAsserted(() -> assertThat(
+                    mailOutboxRepository.findAll(MAIL_OUTBOX.REGISTRATION_EMAIL_ID.eq(registrationEmail.getId())))
+                .singleElement()
+                .satisfies(confirmation -> {
+                    assertThat(confirmation.getStatus()).isEqualTo(MailOutboxStatus.FAILED);
+                    assertThat(confirmation.getLastError()).isEqualTo(MailOutboxWorker.NO_CONFIRMATION);
+                }));
+        }
+        finally {
+            registrationEmailRepository.deleteById(registrationEmail.getId());
+            registration.setConfirmationEmailTextNew(text);
+            registrationRepository.save(registration);
+            registrationCache.evict(2L);
+        }
+    }
+
+    @Test
+    void requeue_invitation_sends_failed_invitation_again() {
+        // Given: The invitation of registration email 2 (Cora Tesi) failed permanently
+        var registrationEmailId = 2L;
+        assertThat(registrationEmailRepository.findByIdFromView(registrationEmailId).orElseThrow().getMailStatus())
+            .isEqualTo(MailOutboxStatus.FAILED);
+
+        // When: Queue it again
+        var queued = registrationService.requeueInvitation(registrationEmailId, "jugi@tverlach.ch");
+
+        // Then: The invitation is sent
+        assertThat(queued).isTrue();
+        await().untilAsserted(() -> assertThat(mailcatcherContainer.getAllEmails())
+            .anySatisfy(email -> assertThat(email.getRecipients()).contains("<cora.tesi@bivo.yt>")));
+        await().untilAsserted(() -> {
+            var registrationEmail = registrationEmailRepository.findByIdFromView(registrationEmailId).orElseThrow();
+            assertThat(registrationEmail.getMailStatus()).isEqualTo(MailOutboxStatus.SENT);
+            assertThat(registrationEmail.getSentAt()).isNotNull();
+        });
+    }
+
+    @Test
+    @Transactional
+    void create_mailing_creates_missing_emails_and_reuses_existing_ones() {
+        // Given: Registration 1 with person 1 (no email yet) and person 5 (email 2)
+        var registration = registrationRepository.findById(1L).orElseThrow();
+
+        // When: Creating the mailing twice
+        var firstResult = registrationService.createMailing(registration);
+        var secondResult = registrationService.createMailing(registration);
+
+        // Then: The first run creates one email, the second one reuses both
+        assertThat(firstResult).isEqualTo(new MailingResult(1, 1));
+        assertThat(secondResult).isEqualTo(new MailingResult(0, 2));
+
+        // And: Every person is linked to the registration email of its address
+        var registrationEmails = registrationEmailRepository
+            .findAll(REGISTRATION_EMAIL.REGISTRATION_ID.eq(registration.getId()));
+        assertThat(registrationEmails).hasSize(3);
+        var newRegistrationEmail = registrationEmails.stream()
+            .filter(registrationEmail -> registrationEmail.getEmail().equals("simon.martinelli@gmail.com"))
+            .findFirst()
+            .orElseThrow();
+        assertThat(newRegistrationEmail.getLink()).hasSize(32);
+        assertThat(registrationEmailRepository.findPersonsByRegistrationEmailId(newRegistrationEmail.getId()))
+            .extracting(PersonRecord::getId)
+            .containsExactly(1L);
+    }
+
+    @Test
+    void findPublicRegistrationSnapshot() {
+        var snapshot = registrationService.findPublicRegistrationSnapshot("550e8400e29b41d4a716446655440000");
+
+        assertThat(snapshot).hasValueSatisfying(s -> {
+            assertThat(s.registrationEmailId()).isEqualTo(1L);
+            assertThat(s.registration().getId()).isEqualTo(1L);
+            assertThat(s.persons()).extracting(PersonRecord::getFirstName).containsExactly("Eula");
+            assertThat(s.events()).extracting(EventRecord::getTitle)
+                .containsExactly("CIS 2023", "Jugendmeisterschaft 2023");
+            assertThat(s.isRegistered(0, 0)).isTrue();
+            assertThat(s.isRegistered(1, 0)).isFalse();
+        });
+    }
+
+    @Test
+    void findPublicRegistrationSnapshot_unknown_link() {
+        assertThat(registrationService.findPublicRegistrationSnapshot("unknown")).isEmpty();
+    }
+
     private EventRegistrationRecord createEventRegistration(Long registrationId, Long eventId, Long personId,
             boolean registered) {
         var eventRegistrationRecord = new EventRegistrationRecord();
@@ -0,0 +1,40 @@
+package ch.martinelli.oss.registration.domain;
+
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Records whether every write happened within a read-only transaction, so exports can be
+ * checked to stream their cursors.
+ */
+class TransactionRecordingOutputStream extends ByteArrayOutputStream {
+
+    private boolean readOnlyTransaction = true;
+
+    @Override
+    public synchronized void write(int b) {
+        recordTransaction();
+        super.write(b);
+    }
+
+    @Override
+    public synchronized void write(byte[] b, int off, int len) {
+        recordTransaction();
+        super.write(b, off, len);
+    }
+
+    /**
+     * @return true if something was written and every write happened within a read-only
+     * transaction
+     */
+    synchronized boolean isWrittenInReadOnlyTransaction() {
+        return size() > 0 && readOnlyTransaction;
+    }
+
+    private void recordTransaction() {
+        readOnlyTransaction &= TransactionSynchronizationManager.isActualTransactionActive()
+                && TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+    }
+
+}
@@ -0,0 +1,114 @@
+package ch.martinelli.oss.registration.security;
+
+import ch.martinelli.oss.registration.TestcontainersConfiguration;
+import ch.martinelli.oss.registration.domain.RegistrationLinkCache;
+import com.vaadin.flow.i18n.I18NProvider;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Import(TestcontainersConfiguration.class)
+@SpringBootTest
+class PublicRateLimitFilterTest {
+
+    private static final String LINK = "550e8400e29b41d4a716446655440000";
+
+    @Autowired
+    private RegistrationLinkCache registrationLinkCache;
+
+    @Autowired
+    private I18NProvider i18NProvider;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private PublicRateLimitFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        filter = new PublicRateLimitFilter(registrationLinkCache, i18NProvider, meterRegistry, 3, 2);
+    }
+
+    @Test
+    void known_link_passes_until_the_link_limit() throws Exception {
+        assertThat(request("/public/" + LINK, "10.0.0.1").getStatus()).isEqualTo(200);
+        assertThat(request("/public/" + LINK, "10.0.0.2").getStatus()).isEqualTo(200);
+
+        var response = request("/public/" + LINK, "10.0.0.3");
+
+        assertThat(response.getStatus()).isEqualTo(429);
+        assertThat(response.getHeader("Retry-After")).isNotBlank();
+        assertThat(shed("link")).isEqualTo(1);
+    }
+
+    @Test
+    void unknown_link_is_rejected_without_session() throws Exception {
+        var request = new MockHttpServletRequest("GET", "/public/guessed");
+        var chain = new MockFilterChain();
+        var response = new MockHttpServletResponse();
+
+        filter.doFilter(request, response, chain);
+
+        assertThat(response.getStatus()).isEqualTo(404);
+        assertThat(response.getContentAsString()).isEqualTo("This link is unknown or no longer valid.");
+        assertThat(chain.getRequest()).isNull();
+        assertThat(request.getSession(false)).isNull();
+        assertThat(shed("unknown-link")).isEqualTo(1);
+    }
+
+    @Test
+    void unknown_link_message_is_translated() throws Exception {
+        var request = new MockHttpServletRequest("GET", "/public/guessed");
+        request.addPreferredLocale(Locale.GERMAN);
+        var response = new MockHttpServletResponse();
+
+        filter.doFilter(request, response, new MockFilterChain());
+
+        assertThat(response.getStatus()).isEqualTo(404);
+        assertThat(response.getContentType()).startsWith("text/plain");
+        assertThat(response.getContentAsString(StandardCharsets.UTF_8))
+            .isEqualTo("Dieser Link ist unbekannt oder nicht mehr gültig.");
+    }
+
+    @Test
+    void client_is_limited_across_links() throws Exception {
+        for (var i = 0; i < 3; i++) {
+            assertThat(request("/public/guessed" + i, "10.0.0.1").getStatus()).isEqualTo(404);
+        }
+
+        assertThat(request("/public/guessed", "10.0.0.1").getStatus()).isEqualTo(429);
+        assertThat(request("/public/guessed", "10.0.0.2").getStatus()).isEqualTo(404);
+        assertThat(shed("ip")).isEqualTo(1);
+    }
+
+    @Test
+    void other_paths_are_not_limited() throws Exception {
+        for (var i = 0; i < 5; i++) {
+            assertThat(request("/registrations", "10.0.0.1").getStatus()).isEqualTo(200);
+        }
+    }
+
+    private MockHttpServletResponse request(String uri, String remoteAddress) throws Exception {
+        var request = new MockHttpServletRequest("GET", uri);
+        request.setRemoteAddr(remoteAddress);
+        var response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        return response;
+    }
+
+    private double shed(String reason) {
+        return meterRegistry.get("registration.public.shed").tag("reason", reason).counter().count();
+    }
+
+}
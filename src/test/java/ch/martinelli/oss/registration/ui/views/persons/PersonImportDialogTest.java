@@ -3,7 +3,7 @@ package ch.martinelli.oss.registration.ui.views.persons;
 import ch.martinelli.oss.registration.db.tables.records.PersonRecord;
 import ch.martinelli.oss.registration.domain.ExcelPersonData;
 import ch.martinelli.oss.registration.domain.PersonChange;
-import ch.martinelli.oss.registration.domain.PersonRepository;
+import ch.martinelli.oss.registration.domain.PersonImportService;
 import ch.martinelli.oss.registration.ui.views.KaribuTest;
 import com.github.mvysny.kaributesting.v10.GridKt;
 import com.vaadin.flow.component.button.Button;
@@ -24,7 +24,7 @@ import static org.assertj.core.api.Assertions.assertThat;
 class PersonImportDialogTest extends KaribuTest {
 
     @Autowired
-    private PersonRepository personRepository;
+    private PersonImportService personImportService;
 
     @Test
     void shouldDisplayNewPersonChange() {
@@ -40,7 +40,7 @@ class PersonImportDialogTest extends KaribuTest {
         List<PersonChange> changes = List.of(change);
 
         // When
-        PersonImportDialog dialog = new PersonImportDialog(changes, personRepository, () -> {
+        PersonImportDialog dialog = new PersonImportDialog(changes, personImportService, () -> {
         });
         dialog.open();
 
@@ -73,7 +73,7 @@ class PersonImportDialogTest extends KaribuTest {
         List<PersonChange> changes = List.of(change);
 
         // When
-        PersonImportDialog dialog = new PersonImportDialog(changes, personRepository, () -> {
+        PersonImportDialog dialog = new PersonImportDialog(changes, personImportService, () -> {
         });
         dialog.open();
 
@@ -91,7 +91,7 @@ class PersonImportDialogTest extends KaribuTest {
         PersonChange change = new PersonChange(PersonChange.ChangeType.NEW, null, newPerson, Map.of());
         List<PersonChange> changes = List.of(change);
 
-        PersonImportDialog dialog = new PersonImportDialog(changes, personRepository, () -> {
+        PersonImportDialog dialog = new PersonImportDialog(changes, personImportService, () -> {
         });
         dialog.open();
 
@@ -120,7 +120,7 @@ class PersonImportDialogTest extends KaribuTest {
 
         List<PersonChange> changes = Arrays.asList(change1, change2);
 
-        PersonImportDialog dialog = new PersonImportDialog(changes, personRepository, () -> {
+        PersonImportDialog dialog = new PersonImportDialog(changes, personImportService, () -> {
         });
         dialog.open();
 
@@ -144,7 +144,7 @@ class PersonImportDialogTest extends KaribuTest {
 
         List<PersonChange> changes = Arrays.asList(change1, change2);
 
-        PersonImportDialog dialog = new PersonImportDialog(changes, personRepository, () -> {
+        PersonImportDialog dialog = new PersonImportDialog(changes, personImportService, () -> {
         });
         dialog.open();
 
@@ -170,7 +170,8 @@ class PersonImportDialogTest extends KaribuTest {
 
         AtomicBoolean callbackCalled = new AtomicBoolean(false);
 
-        PersonImportDialog dialog = new PersonImportDialog(changes, personRepository, () -> callbackCalled.set(true));
+        PersonImportDialog dialog = new PersonImportDialog(changes, personImportService,
+                () -> callbackCalled.set(true));
         dialog.open();
 
         // When
@@ -1,8 +1,9 @@
 package ch.martinelli.oss.registration.ui.views.persons;
 
 import ch.martinelli.oss.registration.domain.PersonChangeDetector;
-import ch.martinelli.oss.registration.domain.PersonRepository;
+import ch.martinelli.oss.registration.domain.PersonImportService;
 import ch.martinelli.oss.registration.ui.views.KaribuTest;
+import com.github.mvysny.kaributesting.v10.MockVaadin;
 import com.github.mvysny.kaributesting.v10.NotificationsKt;
 import com.github.mvysny.kaributesting.v10.UploadKt;
 import com.vaadin.flow.component.button.Button;
@@ -17,8 +18,10 @@ import java.nio.file.Path;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import static com.github.mvysny.kaributesting.v10.LocatorJ._click;
+import static com.github.mvysny.kaributesting.v10.LocatorJ._find;
 import static com.github.mvysny.kaributesting.v10.LocatorJ._get;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
 
 class PersonUploadDialogTest extends KaribuTest {
 
@@ -26,7 +29,7 @@ class PersonUploadDialogTest extends KaribuTest {
     private PersonChangeDetector personChangeDetector;
 
     @Autowired
-    private PersonRepository personRepository;
+    private PersonImportService personImportService;
 
     private AtomicBoolean callbackCalled;
 
@@ -41,7 +44,7 @@ class PersonUploadDialogTest extends KaribuTest {
     @Test
     void shouldInitializeDialogWithCorrectConfiguration() {
         // When
-        var dialog = new PersonUploadDialog(personChangeDetector, personRepository, () -> callbackCalled.set(true));
+        var dialog = new PersonUploadDialog(personChangeDetector, personImportService, () -> callbackCalled.set(true));
         dialog.open();
 
         // Then
@@ -61,7 +64,7 @@ class PersonUploadDialogTest extends KaribuTest {
     @Test
     void shouldCreateUploadComponent() {
         // Given/When
-        var dialog = new PersonUploadDialog(personChangeDetector, personRepository, () -> callbackCalled.set(true));
+        var dialog = new PersonUploadDialog(personChangeDetector, personImportService, () -> callbackCalled.set(true));
         dialog.open();
 
         // Then - Verify upload component exists and is properly configured
@@ -77,7 +80,7 @@ class PersonUploadDialogTest extends KaribuTest {
     @Test
     void shouldAcceptOnlyXlsxFiles() {
         // Given/When
-        var dialog = new PersonUploadDialog(personChangeDetector, personRepository, () -> callbackCalled.set(true));
+        var dialog = new PersonUploadDialog(personChangeDetector, personImportService, () -> callbackCalled.set(true));
         dialog.open();
 
         // Then - Verify accepted file types
@@ -90,7 +93,7 @@ class PersonUploadDialogTest extends KaribuTest {
     @Test
     void shouldConfigureCallbackCorrectly() {
         // Given/When
-        var dialog = new PersonUploadDialog(personChangeDetector, personRepository, () -> callbackCalled.set(true));
+        var dialog = new PersonUploadDialog(personChangeDetector, personImportService, () -> callbackCalled.set(true));
         dialog.open();
 
         // Then - Verify callback is stored and can be invoked
@@ -102,7 +105,7 @@ class PersonUploadDialogTest extends KaribuTest {
     @Test
     void shouldHandleMaxFileSizeExceeded() {
         // Given
-        var dialog = new PersonUploadDialog(personChangeDetector, personRepository, () -> callbackCalled.set(true));
+        var dialog = new PersonUploadDialog(personChangeDetector, personImportService, () -> callbackCalled.set(true));
         dialog.open();
 
         // When
@@ -116,7 +119,7 @@ class PersonUploadDialogTest extends KaribuTest {
     @Test
     void shouldHandleInvalidFileType() {
         // Given
-        var dialog = new PersonUploadDialog(personChangeDetector, personRepository, () -> callbackCalled.set(true));
+        var dialog = new PersonUploadDialog(personChangeDetector, personImportService, () -> callbackCalled.set(true));
         dialog.open();
 
         // When
@@ -132,7 +135,7 @@ class PersonUploadDialogTest extends KaribuTest {
     @Test
     void shouldHandleMultipleFileUploadAttempt() {
         // Given
-        var dialog = new PersonUploadDialog(personChangeDetector, personRepository, () -> callbackCalled.set(true));
+        var dialog = new PersonUploadDialog(personChangeDetector, personImportService, () -> callbackCalled.set(true));
         dialog.open();
 
         // When
@@ -149,7 +152,7 @@ class PersonUploadDialogTest extends KaribuTest {
     @Test
     void shouldCloseDialogWhenCancelButtonClicked() {
         // Given
-        var dialog = new PersonUploadDialog(personChangeDetector, personRepository, () -> callbackCalled.set(true));
+        var dialog = new PersonUploadDialog(personChangeDetector, personImportService, () -> callbackCalled.set(true));
         dialog.open();
         assertThat(dialog.isOpened()).isTrue();
 
@@ -165,7 +168,7 @@ class PersonUploadDialogTest extends KaribuTest {
     @Test
     void shouldDisplayInstructions() {
         // Given/When
-        var dialog = new PersonUploadDialog(personChangeDetector, personRepository, () -> callbackCalled.set(true));
+        var dialog = new PersonUploadDialog(personChangeDetector, personImportService, () -> callbackCalled.set(true));
         dialog.open();
 
         // Then - Verify instructions paragraph exists in dialog
@@ -179,7 +182,7 @@ class PersonUploadDialogTest extends KaribuTest {
     @Test
     void shouldSuccessfullyUploadValidExcelFile() throws IOException {
         // Given
-        var dialog = new PersonUploadDialog(personChangeDetector, personRepository, () -> callbackCalled.set(true));
+        var dialog = new PersonUploadDialog(personChangeDetector, personImportService, () -> callbackCalled.set(true));
         dialog.open();
 
         var upload = _get(dialog, Upload.class);
@@ -189,7 +192,12 @@ class PersonUploadDialogTest extends KaribuTest {
         var fileContent = Files.readAllBytes(excelFile);
         UploadKt._upload(upload, "upload_partipipants.xlsx", fileContent);
 
-        // Then - Verify PersonImportDialog is opened with changes
+        // Then - Verify PersonImportDialog is opened with changes once they are detected
+        // Poll in the test thread, which has the Vaadin session
+        await().pollInSameThread().until(() -> {
+            MockVaadin.clientRoundtrip();
+            return !_find(PersonImportDialog.class).isEmpty();
+        });
         var importDialog = _get(PersonImportDialog.class);
         assertThat(importDialog.isOpened()).isTrue();
     }
@@ -197,7 +205,7 @@ class PersonUploadDialogTest extends KaribuTest {
     @Test
     void shouldThrowExceptionForInvalidExcelFile() {
         // Given
-        var dialog = new PersonUploadDialog(personChangeDetector, personRepository, () -> callbackCalled.set(true));
+        var dialog = new PersonUploadDialog(personChangeDetector, personImportService, () -> callbackCalled.set(true));
         dialog.open();
 
         var upload = _get(dialog, Upload.class);
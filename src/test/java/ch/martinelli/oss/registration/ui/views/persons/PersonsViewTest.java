@@ -195,4 +195,25 @@ class PersonsViewTest extends KaribuTest {
         assertThat(toggleButton.getText()).isEqualTo("Inaktive anzeigen");
     }
 
-}
\ No newline at end of file
+    @Test
+    void search_persons() {
+        @SuppressWarnings("unchecked")
+        var grid = (Grid<PersonRecord>) _get(Grid.class);
+        var initialSize = GridKt._size(grid);
+
+        var searchTextField = _get(TextField.class, spec -> spec.withId("search-text-field"));
+        searchTextField.setValue("LANE");
+
+        // Only the matching persons are counted and loaded
+        var size = GridKt._size(grid);
+        assertThat(size).isPositive().isLessThan(initialSize);
+        for (var i = 0; i < size; i++) {
+            var person = GridKt._get(grid, i);
+            assertThat(person.getLastName() + person.getFirstName() + person.getEmail()).containsIgnoringCase("lane");
+        }
+
+        searchTextField.clear();
+        assertThat(GridKt._size(grid)).isEqualTo(initialSize);
+    }
+
+}
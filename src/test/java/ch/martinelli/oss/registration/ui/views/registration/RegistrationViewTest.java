@@ -103,7 +103,7 @@ class RegistrationViewTest extends KaribuTest {
         ConfirmDialogKt._fireConfirm(_get(ConfirmDialog.class));
 
         // Check if save was successful
-        NotificationsKt.expectNotifications("Der Versand wurde erstellt");
+        NotificationsKt.expectNotifications("Der Versand wurde erstellt (1 neu, 0 bestehend)");
 
         // Create mailing
         _click(_get(Button.class, spec -> spec.withText("E-Mails verschicken")));
@@ -74,3 +74,5 @@ insert into registration_email_person (registration_email_id,person_id) values (
 insert into registration_email_person (registration_email_id,person_id) values (3,2);
 insert into registration_email_person (registration_email_id,person_id) values (4,2);
 insert into registration_email_person (registration_email_id,person_id) values (5,2);
+
+insert into mail_outbox (id,registration_email_id,reply_to,status,attempts,last_error) values (1,2,'jugi@tverlach.ch','FAILED',5,'550 5.1.1 Mailbox unavailable');